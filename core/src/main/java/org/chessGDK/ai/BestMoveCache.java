@@ -0,0 +1,254 @@
+package org.chessGDK.ai;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Search results by position, engine and difficulty, so a position searched
+ * before comes back at once. Each entry keeps the depth its search reached,
+ * and only a deeper search replaces it; a lookup names the least depth it
+ * will take. Puzzles, openings and reloaded games repeat the same positions
+ * often.
+ *
+ * The cache keeps the most recently used entries in memory up to a fixed
+ * count and is safe to share between games. With a spill file, entries
+ * pushed out of memory are written to a fixed-size hashed file instead of
+ * being lost, memory misses are looked up there, and the file keeps them
+ * between runs. Set -Dengine.cache to a path to spill there, and
+ * -Dengine.cache.size for the number of entries kept in memory.
+ */
+public class BestMoveCache implements Closeable {
+    public static final int DEFAULT_SIZE = 4096;
+    // Engine kinds, as the two engines differ on the same position
+    public static final int STOCKFISH = 1;
+    public static final int BUILT_IN = 2;
+    private static final int SPILL_SLOTS = 1 << 16;
+    // Key 8, engine 2, difficulty 2, depth 4, then best move, ponder move
+    // and score as 8 ASCII bytes each
+    private static final int RECORD_BYTES = 40;
+    private static final int TEXT_BYTES = 8;
+
+    private static BestMoveCache shared;
+
+    private final int capacity;
+    private final LinkedHashMap<Key, String[]> entries;
+    private final FileChannel spillChannel;
+    private final MappedByteBuffer spill;
+
+    private long hits;
+    private long spillHits;
+    private long misses;
+    private long evictions;
+
+    private static final class Key {
+        final long position;
+        final int engine;
+        final int difficulty;
+
+        Key(long position, int engine, int difficulty) {
+            this.position = position;
+            this.engine = engine;
+            this.difficulty = difficulty;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return position == other.position && engine == other.engine && difficulty == other.difficulty;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(position, engine, difficulty);
+        }
+    }
+
+    /**
+     * A cache of the given size, spilling to the file at spillPath, or
+     * keeping nothing beyond memory when it is null.
+     */
+    public BestMoveCache(int capacity, Path spillPath) throws IOException {
+        this.capacity = Math.max(1, capacity);
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, String[]> eldest) {
+                if (size() <= BestMoveCache.this.capacity)
+                    return false;
+                evictions++;
+                writeSpill(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+        if (spillPath == null) {
+            spillChannel = null;
+            spill = null;
+            return;
+        }
+        spillChannel = FileChannel.open(spillPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        spill = spillChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) SPILL_SLOTS * RECORD_BYTES);
+        System.out.println("Best move cache spilling to " + spillPath);
+    }
+
+    public static synchronized BestMoveCache shared() {
+        if (shared == null) {
+            int size = Integer.getInteger("engine.cache.size", DEFAULT_SIZE);
+            String path = System.getProperty("engine.cache");
+            try {
+                shared = new BestMoveCache(size, path == null ? null : Path.of(path));
+                if (path != null)
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                        try {
+                            shared.close();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }, "best-move-cache-shutdown"));
+            } catch (IOException e) {
+                System.out.println("Could not open cache spill " + path + ": " + e.getMessage());
+                try {
+                    shared = new BestMoveCache(size, null);
+                } catch (IOException impossible) {
+                    throw new IllegalStateException(impossible);
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * The best move, ponder move, score and depth stored for the position,
+     * or null if it hasn't been searched this way to at least minDepth.
+     */
+    public synchronized String[] get(long position, int engine, int difficulty, int minDepth) {
+        Key key = new Key(position, engine, difficulty);
+        String[] result = entries.get(key);
+        if (result != null && depthOf(result) >= minDepth) {
+            hits++;
+            return result.clone();
+        }
+        String[] spilled = result == null ? readSpill(key) : null;
+        if (spilled != null && depthOf(spilled) >= minDepth) {
+            spillHits++;
+            entries.put(key, spilled);
+            return spilled.clone();
+        }
+        misses++;
+        return null;
+    }
+
+    // Kept unless the position is already stored from a deeper search
+    public synchronized void put(long position, int engine, int difficulty, String[] result) {
+        Key key = new Key(position, engine, difficulty);
+        String[] stored = entries.get(key);
+        if (stored == null || depthOf(stored) <= depthOf(result))
+            entries.put(key, result.clone());
+    }
+
+    // The depth in a search result, or 0 when it doesn't give one
+    public static int depthOf(String[] result) {
+        if (result.length < 4 || result[3].isEmpty())
+            return 0;
+        try {
+            return Integer.parseInt(result[3]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long spillHits() {
+        return spillHits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized String statistics() {
+        return "best move cache " + entries.size() + "/" + capacity + " entries, " + hits + " hits, "
+            + spillHits + " spill hits, " + misses + " misses, " + evictions + " evictions";
+    }
+
+    private int slot(Key key) {
+        long h = key.position ^ (key.difficulty * 0x9E3779B97F4A7C15L) ^ (key.engine * 0xC2B2AE3D27D4EB4FL);
+        return (int) (h >>> 48) & (SPILL_SLOTS - 1);
+    }
+
+    // A newer entry for the same slot replaces the older one
+    private void writeSpill(Key key, String[] result) {
+        if (spill == null)
+            return;
+        int offset = slot(key) * RECORD_BYTES;
+        spill.putLong(offset, key.position);
+        spill.putShort(offset + 8, (short) key.engine);
+        spill.putShort(offset + 10, (short) key.difficulty);
+        spill.putInt(offset + 12, depthOf(result));
+        for (int i = 0; i < 3; i++)
+            putText(offset + 16 + i * TEXT_BYTES, i < result.length ? result[i] : "");
+    }
+
+    private String[] readSpill(Key key) {
+        if (spill == null)
+            return null;
+        int offset = slot(key) * RECORD_BYTES;
+        // Engine 0 marks a slot never written
+        if (spill.getLong(offset) != key.position || spill.getShort(offset + 8) != key.engine
+            || spill.getShort(offset + 10) != key.difficulty)
+            return null;
+        String[] result = new String[4];
+        for (int i = 0; i < 3; i++)
+            result[i] = getText(offset + 16 + i * TEXT_BYTES);
+        result[3] = Integer.toString(spill.getInt(offset + 12));
+        return result;
+    }
+
+    private void putText(int offset, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < TEXT_BYTES; i++)
+            spill.put(offset + i, i < bytes.length ? bytes[i] : 0);
+    }
+
+    private String getText(int offset) {
+        byte[] bytes = new byte[TEXT_BYTES];
+        int length = 0;
+        while (length < TEXT_BYTES && (bytes[length] = spill.get(offset + length)) != 0)
+            length++;
+        return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Writes everything still in memory to the spill file, so the next run
+     * starts with it, and closes the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (spill == null)
+            return;
+        for (Map.Entry<Key, String[]> entry : entries.entrySet())
+            writeSpill(entry.getKey(), entry.getValue());
+        spill.force();
+        spillChannel.close();
+    }
+}
@@ -0,0 +1,64 @@
+package org.chessGDK.ai;
+
+import org.chessGDK.logic.Move;
+import org.chessGDK.logic.MoveGenerator;
+import org.chessGDK.logic.Position;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Builds the OpeningBook file from a text file of opening lines, one game
+ * per line as UCI moves. Each position on a line gets an entry for the move
+ * played from it, weighted by how many lines play it. Run it with
+ * "gradlew core:buildBook".
+ */
+public class BookBuilder {
+    public static void main(String[] args) throws IOException {
+        Path input = Path.of(args.length > 0 ? args[0] : "assets/book/openings.txt");
+        Path output = Path.of(args.length > 1 ? args[1] : "assets/book/book.bin");
+
+        // Entries sorted by unsigned key, then by move
+        Map<Long, Map<Integer, Integer>> book = new TreeMap<>(Long::compareUnsigned);
+        int[] legal = new int[MoveGenerator.MAX_MOVES];
+        int lines = 0;
+        for (String line : Files.readAllLines(input)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            lines++;
+            Position pos = new Position();
+            for (String uci : line.split("\\s+")) {
+                int move = Move.find(legal, MoveGenerator.generateLegal(pos, legal), uci);
+                if (move == Move.NONE)
+                    throw new IllegalArgumentException("Illegal move " + uci + " in line " + lines + ": " + line);
+                book.computeIfAbsent(PolyglotKey.of(pos), key -> new TreeMap<>())
+                    .merge(OpeningBook.toBookMove(move), 1, Integer::sum);
+                pos.makeMove(move);
+            }
+        }
+
+        List<long[]> entries = new ArrayList<>();
+        for (Map.Entry<Long, Map<Integer, Integer>> position : book.entrySet()) {
+            for (Map.Entry<Integer, Integer> move : position.getValue().entrySet())
+                entries.add(new long[] {position.getKey(), move.getKey(), Math.min(move.getValue(), 0xFFFF)});
+        }
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(output))) {
+            for (long[] entry : entries) {
+                out.writeLong(entry[0]);
+                out.writeShort((int) entry[1]);
+                out.writeShort((int) entry[2]);
+                out.writeInt(0);
+            }
+        }
+        System.out.println("Wrote " + entries.size() + " entries for " + book.size() + " positions from "
+            + lines + " lines to " + output);
+    }
+}
@@ -0,0 +1,122 @@
+package org.chessGDK.ai;
+
+import org.chessGDK.logic.Position;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Puts a BestMoveCache in front of another engine. The position sent to the
+ * engine is also played out here, and its Zobrist key with the engine kind
+ * and difficulty looks up the cache before any search, fixed-time or on the
+ * clock. A stored result is used when it is at least as deep as this
+ * engine's last search reached, so it is no weaker than a new search.
+ */
+public class CachedEngine implements ChessEngine {
+    private final ChessEngine engine;
+    private final BestMoveCache cache;
+    private final int kind;
+    private final int difficulty;
+    private final Position position = new Position();
+    // Depth of the last search kept; nothing is reused before the first
+    private volatile int expectedDepth = Integer.MAX_VALUE;
+    // Bumped when the position changes, which stops a search in progress;
+    // a stopped search's move is cut short and not worth keeping
+    private volatile int generation;
+
+    public CachedEngine(ChessEngine engine, BestMoveCache cache, int kind, int difficulty, String fen) {
+        this.engine = engine;
+        this.cache = cache;
+        this.kind = kind;
+        this.difficulty = difficulty;
+        UciClient.setPosition(position, fen);
+    }
+
+    @Override
+    public synchronized void sendPosition(String fen) {
+        generation++;
+        UciClient.setPosition(position, fen);
+        engine.sendPosition(fen);
+    }
+
+    @Override
+    public synchronized String[] getBestMove() throws IOException {
+        long key = position.key();
+        String[] moves = cache.get(key, kind, difficulty, expectedDepth);
+        if (moves != null)
+            return moves;
+        return store(key, engine.getBestMove());
+    }
+
+    // A hit also ends any ponder search, whose move is no longer needed
+    @Override
+    public synchronized String[] getBestMove(long wtime, long btime, long winc, long binc) throws IOException {
+        long key = position.key();
+        String[] moves = cache.get(key, kind, difficulty, expectedDepth);
+        if (moves != null) {
+            engine.stop();
+            return moves;
+        }
+        return store(key, engine.getBestMove(wtime, btime, winc, binc));
+    }
+
+    @Override
+    public void ponder(String predicted, long wtime, long btime, long winc, long binc) {
+        engine.ponder(predicted, wtime, btime, winc, binc);
+    }
+
+    @Override
+    public synchronized String[] getBestMove(String fen) throws IOException {
+        sendPosition(fen);
+        return getBestMove();
+    }
+
+    // A hit completes at once; the key is taken now, as the position may
+    // change before the search ends
+    @Override
+    public synchronized CompletableFuture<String[]> getBestMoveAsync() {
+        long key = position.key();
+        String[] moves = cache.get(key, kind, difficulty, expectedDepth);
+        if (moves != null)
+            return CompletableFuture.completedFuture(moves);
+        int started = generation;
+        // Runs on the engine's reader thread, so it must not wait for this lock
+        return engine.getBestMoveAsync().thenApply(result -> started == generation ? store(key, result) : result);
+    }
+
+    // Positions without a legal move are cheap to search and not kept,
+    // nor are results that don't say how deep they went
+    private String[] store(long key, String[] moves) {
+        int depth = BestMoveCache.depthOf(moves);
+        if (!moves[0].equals("(none)") && depth > 0) {
+            expectedDepth = depth;
+            cache.put(key, kind, difficulty, moves);
+        }
+        return moves;
+    }
+
+    @Override
+    public synchronized void stop() {
+        generation++;
+        engine.stop();
+    }
+
+    @Override
+    public void printBoard() {
+        engine.printBoard();
+    }
+
+    @Override
+    public void release() throws IOException {
+        synchronized (this) {
+            generation++;
+        }
+        System.out.println(cache.statistics());
+        engine.release();
+    }
+
+    @Override
+    public void close() throws IOException {
+        engine.close();
+    }
+}
@@ -0,0 +1,97 @@
+package org.chessGDK.ai;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * What GameManager needs from an AI opponent. Moves are UCI text, the same
+ * as Stockfish prints them, so either engine can sit behind the game.
+ */
+public interface ChessEngine extends Closeable {
+    // Milliseconds per move for searches without a clock
+    long FIXED_MOVETIME = 400;
+
+    // Sets the position to search: a FEN, or a UCI position command that
+    // may list the moves played since
+    void sendPosition(String fen);
+
+    // Best move, predicted reply, score ("cp 35", "mate 3", or "" when
+    // unknown) and depth reached ("" when unknown) for the current
+    // position; the best move is "(none)" when there is no legal move
+    String[] getBestMove() throws IOException;
+
+    // Searches for as long as the clocks allow, in milliseconds
+    String[] getBestMove(long wtime, long btime, long winc, long binc) throws IOException;
+
+    String[] getBestMove(String fen) throws IOException;
+
+    // Starts the same search as getBestMove() without waiting for it; the
+    // default searches on the calling thread
+    default CompletableFuture<String[]> getBestMoveAsync() {
+        try {
+            return CompletableFuture.completedFuture(getBestMove());
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Searches the position after the predicted reply while the opponent
+     * thinks, on the clocks as they stand. If the next position sent is the
+     * predicted one the search carries on as the clock search for it, and
+     * the next getBestMove with clocks returns its move; any other position
+     * stops it. The default does not ponder.
+     */
+    default void ponder(String predicted, long wtime, long btime, long winc, long binc) {
+    }
+
+    // Ends any search still running, pondering included, whose move is no
+    // longer wanted. The default searches only when asked and has none
+    default void stop() {
+    }
+
+    void printBoard();
+
+    // Called when the game is done with the engine; pooled engines go back
+    // to their pool, others are closed
+    default void release() throws IOException {
+        close();
+    }
+
+    @Override
+    void close() throws IOException;
+
+    /**
+     * Picks the engine for a new game. The bundled Stockfish binary only
+     * runs on Windows, so other platforms get the built-in search. Setting
+     * -Dengine=stockfish or -Dengine=java overrides the choice, and
+     * -Dengine.hash sets the hash table size in MB for either engine.
+     * Stockfish is leased from the shared EnginePool. Either engine is
+     * wrapped in a CachedEngine sharing one BestMoveCache.
+     */
+    static ChessEngine create(int depth, int difficulty, int threads, String fen) throws IOException {
+        int hashMb = Integer.getInteger("engine.hash", SearchEngine.DEFAULT_HASH_MB);
+        boolean stockfish = usesStockfish();
+        ChessEngine engine;
+        if (stockfish)
+            engine = EnginePool.shared().lease(difficulty, threads, hashMb, fen);
+        else
+            engine = new SearchEngine(difficulty, fen, Evaluation.load(System.getProperty("eval.weights")), hashMb, threads);
+        int kind = stockfish ? BestMoveCache.STOCKFISH : BestMoveCache.BUILT_IN;
+        return new CachedEngine(engine, BestMoveCache.shared(), kind, difficulty, fen);
+    }
+
+    static boolean usesStockfish() {
+        String engine = System.getProperty("engine");
+        if (engine == null)
+            engine = System.getProperty("os.name", "").startsWith("Windows") ? "stockfish" : "java";
+        return engine.equals("stockfish");
+    }
+
+    // Starts a Stockfish process in the background before the first game
+    static void warmUp() {
+        if (usesStockfish())
+            EnginePool.shared().warmUp(1);
+    }
+}
@@ -0,0 +1,158 @@
+package org.chessGDK.ai;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Stockfish processes kept running between games. A game leases one, which
+ * is reset with ucinewgame and isready instead of starting a new process,
+ * and releases it when the game ends. The number of processes is capped,
+ * by default at the core count, and -Dengine.pool changes the cap; when
+ * every process is leased the next lease waits for a release.
+ */
+public class EnginePool {
+    private static EnginePool shared;
+
+    private final int maxProcesses;
+    private final int threads;
+    private final int hashMb;
+    private final LinkedBlockingDeque<StockfishAI> idle = new LinkedBlockingDeque<>();
+    // Every process the pool has started and not yet discarded
+    private final List<StockfishAI> all = new ArrayList<>();
+    // Processes being started outside the lock, counted against the cap
+    private int starting;
+
+    public EnginePool(int maxProcesses, int threads, int hashMb) {
+        this.maxProcesses = Math.max(1, maxProcesses);
+        this.threads = threads;
+        this.hashMb = hashMb;
+    }
+
+    public static synchronized EnginePool shared() {
+        if (shared == null) {
+            int max = Integer.getInteger("engine.pool", Runtime.getRuntime().availableProcessors());
+            shared = new EnginePool(max, 1, Integer.getInteger("engine.hash", SearchEngine.DEFAULT_HASH_MB));
+            Runtime.getRuntime().addShutdownHook(new Thread(shared::shutdown, "engine-pool-shutdown"));
+        }
+        return shared;
+    }
+
+    /**
+     * Starts processes in the background until count are idle, so the
+     * first games don't wait for a process to start.
+     */
+    public void warmUp(int count) {
+        Thread thread = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                StockfishAI engine = spawn();
+                if (engine == null)
+                    break;
+                idle.offer(engine);
+            }
+        }, "engine-pool-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * An engine set up for a new game: an idle process if there is one, a
+     * new one if the cap allows, or else the next one released.
+     */
+    public StockfishAI lease(int difficulty, int threads, int hashMb, String fen) throws IOException {
+        while (true) {
+            StockfishAI engine = idle.poll();
+            if (engine == null)
+                engine = spawn();
+            if (engine == null) {
+                try {
+                    engine = idle.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for an engine", e);
+                }
+            }
+            if (!engine.isAlive()) {
+                discard(engine);
+                continue;
+            }
+            try {
+                engine.newGame(difficulty, threads, hashMb, fen);
+            } catch (IOException e) {
+                discard(engine);
+                continue;
+            }
+            engine.setPool(this);
+            System.out.println("Engine leased, " + idle.size() + " idle of " + size());
+            return engine;
+        }
+    }
+
+    // Stops any search the game left running and makes the engine idle
+    void release(StockfishAI engine) {
+        engine.setPool(null);
+        if (!engine.isAlive()) {
+            discard(engine);
+            return;
+        }
+        engine.stop();
+        idle.offerFirst(engine);
+        System.out.println("Engine released, " + idle.size() + " idle of " + size());
+    }
+
+    // A new process, or null when the pool is at its cap
+    private StockfishAI spawn() {
+        synchronized (all) {
+            if (all.size() + starting >= maxProcesses)
+                return null;
+            starting++;
+        }
+        StockfishAI engine = null;
+        try {
+            engine = new StockfishAI(0, -1, threads, hashMb, "position startpos");
+        } catch (IOException e) {
+            System.out.println("Could not start engine: " + e.getMessage());
+        }
+        synchronized (all) {
+            starting--;
+            if (engine != null)
+                all.add(engine);
+        }
+        return engine;
+    }
+
+    private void discard(StockfishAI engine) {
+        synchronized (all) {
+            all.remove(engine);
+        }
+        try {
+            engine.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public int size() {
+        synchronized (all) {
+            return all.size();
+        }
+    }
+
+    // Ends every process, leased or not
+    public void shutdown() {
+        List<StockfishAI> engines;
+        synchronized (all) {
+            engines = new ArrayList<>(all);
+            all.clear();
+        }
+        idle.clear();
+        for (StockfishAI engine : engines) {
+            try {
+                engine.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.chessGDK.ai;
+
+import org.chessGDK.logic.Attacks;
+import org.chessGDK.logic.Position;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Properties;
+
+/**
+ * Static evaluation in centipawns from the side to move's point of view.
+ * The weights are public fields so they can be tuned; load() overrides
+ * them from a properties file whose keys are the field names.
+ *
+ * Piece-square sums come from Position, which updates them as moves are
+ * made and unmade. Pawn structure is looked up in a PawnTable when the
+ * caller passes one, so it is only worked out when the pawns change.
+ */
+public class Evaluation {
+    public int pawnValue = 100;
+    public int knightValue = 320;
+    public int bishopValue = 330;
+    public int rookValue = 500;
+    public int queenValue = 900;
+    public int bishopPair = 30;
+    // Per attacked square, for knights, bishops, rooks and queens
+    public int mobility = 2;
+    // Percent applied to the piece-square tables
+    public int pstScale = 100;
+    public int tempo = 10;
+    // Per extra pawn on a file, and per pawn with no friendly pawn beside it
+    public int doubledPawn = 10;
+    public int isolatedPawn = 15;
+    // Per rank a passed pawn has advanced
+    public int passedPawn = 10;
+
+    private static final long FILE_A = 0x0101010101010101L;
+
+    // Game phase: 24 with all minor and major pieces on, 0 with none
+    private static final int[] PHASE = {0, 1, 1, 2, 4, 0};
+    private static final int MAX_PHASE = 24;
+
+    /**
+     * Default weights with any overrides from the properties file at path.
+     * A null path or unreadable file leaves the defaults.
+     */
+    public static Evaluation load(String path) {
+        Evaluation eval = new Evaluation();
+        if (path == null)
+            return eval;
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(path)) {
+            props.load(in);
+        } catch (IOException e) {
+            System.out.println("Could not read eval weights: " + e.getMessage());
+            return eval;
+        }
+        eval.setWeights(props);
+        return eval;
+    }
+
+    public void setWeights(Properties props) {
+        for (Field field : Evaluation.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || !props.containsKey(field.getName()))
+                continue;
+            try {
+                field.setInt(this, Integer.parseInt(props.getProperty(field.getName()).trim()));
+            } catch (IllegalAccessException | NumberFormatException e) {
+                System.out.println("Bad eval weight " + field.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public int pieceValue(int type) {
+        switch (type) {
+            case Position.PAWN: return pawnValue;
+            case Position.KNIGHT: return knightValue;
+            case Position.BISHOP: return bishopValue;
+            case Position.ROOK: return rookValue;
+            case Position.QUEEN: return queenValue;
+            default: return 0;
+        }
+    }
+
+    public int evaluate(Position pos) {
+        return evaluate(pos, null);
+    }
+
+    public int evaluate(Position pos, PawnTable pawns) {
+        int phase = 0;
+        for (int color = Position.WHITE; color <= Position.BLACK; color++) {
+            for (int type = Position.KNIGHT; type <= Position.QUEEN; type++)
+                phase += PHASE[type] * Long.bitCount(pos.pieces(color, type));
+        }
+        phase = Math.min(phase, MAX_PHASE);
+
+        int placement = (pos.pieceSquareMiddle() * phase + pos.pieceSquareEnd() * (MAX_PHASE - phase)) / MAX_PHASE;
+        int score = side(pos, Position.WHITE) - side(pos, Position.BLACK) + placement * pstScale / 100
+            + pawnStructure(pos, pawns);
+        return (pos.isWhiteToMove() ? score : -score) + tempo;
+    }
+
+    // Material and mobility for one color
+    private int side(Position pos, int color) {
+        long occupied = pos.occupied();
+        long own = pos.pieces(color);
+        int score = pawnValue * Long.bitCount(pos.pieces(color, Position.PAWN));
+        for (int type = Position.KNIGHT; type <= Position.QUEEN; type++) {
+            long pieces = pos.pieces(color, type);
+            score += pieceValue(type) * Long.bitCount(pieces);
+            while (pieces != 0) {
+                int sq = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                score += mobility * Long.bitCount(attacks(type, sq, occupied) & ~own);
+            }
+        }
+        if (Long.bitCount(pos.pieces(color, Position.BISHOP)) >= 2)
+            score += bishopPair;
+        return score;
+    }
+
+    // Doubled, isolated and passed pawns, White minus Black
+    private int pawnStructure(Position pos, PawnTable pawns) {
+        long key = pos.pawnKey();
+        if (pawns != null && pawns.contains(key))
+            return pawns.score(key);
+        long white = pos.pieces(Position.WHITE, Position.PAWN);
+        long black = pos.pieces(Position.BLACK, Position.PAWN);
+        int score = pawnSide(white, black, Position.WHITE) - pawnSide(black, white, Position.BLACK);
+        if (pawns != null)
+            pawns.store(key, score);
+        return score;
+    }
+
+    private int pawnSide(long own, long enemy, int color) {
+        int score = 0;
+        for (int file = 0; file < 8; file++) {
+            int count = Long.bitCount(own & (FILE_A << file));
+            if (count > 1)
+                score -= doubledPawn * (count - 1);
+        }
+        for (long pawns = own; pawns != 0; pawns &= pawns - 1) {
+            int sq = Long.numberOfTrailingZeros(pawns);
+            int file = sq & 7;
+            int rank = sq >>> 3;
+            long adjacent = (file > 0 ? FILE_A << (file - 1) : 0) | (file < 7 ? FILE_A << (file + 1) : 0);
+            if ((own & adjacent) == 0)
+                score -= isolatedPawn;
+            // Ranks in front of the pawn, from its side's point of view
+            long ahead = color == Position.WHITE ? -1L << (8 * rank + 8) : (1L << (8 * rank)) - 1;
+            if ((enemy & ahead & (adjacent | FILE_A << file)) == 0)
+                score += passedPawn * (color == Position.WHITE ? rank - 1 : 6 - rank);
+        }
+        return score;
+    }
+
+    private static long attacks(int type, int sq, long occupied) {
+        switch (type) {
+            case Position.KNIGHT: return Attacks.KNIGHT[sq];
+            case Position.BISHOP: return Attacks.bishop(sq, occupied);
+            case Position.ROOK: return Attacks.rook(sq, occupied);
+            default: return Attacks.queen(sq, occupied);
+        }
+    }
+}
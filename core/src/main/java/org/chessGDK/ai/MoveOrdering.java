@@ -0,0 +1,120 @@
+package org.chessGDK.ai;
+
+import org.chessGDK.logic.Move;
+
+import java.util.Arrays;
+
+/**
+ * What one search thread has learned about which moves cause cutoffs:
+ * two killer moves per ply, a countermove for each previous move, and
+ * history scores for quiet moves. All tables are primitive arrays indexed
+ * by the from/to bits of the packed move. It also counts, per stage of the
+ * MovePicker, how many moves were tried and how many of them cut off.
+ */
+public class MoveOrdering {
+    private static final int HISTORY_MAX = 16384;
+
+    // killers[ply][slot], newest in slot 0
+    private final int[][] killers = new int[Search.MAX_PLY][2];
+    // Reply that refuted the previous move, indexed by its from/to
+    private final int[] counterMoves = new int[4096];
+    // history[color][from/to], kept within +-HISTORY_MAX
+    private final short[][] history = new short[2][4096];
+
+    private final long[] tried = new long[MovePicker.STAGE_NAMES.length];
+    private final long[] cutoffs = new long[MovePicker.STAGE_NAMES.length];
+    private long cutoffNodes;
+    private long firstMoveCutoffs;
+
+    static int index(int move) {
+        return move & 0xFFF;
+    }
+
+    // Called at the start of each search; history is halved, not cleared,
+    // since it is still mostly right for the next move
+    public void newSearch() {
+        for (int[] slots : killers) {
+            slots[0] = Move.NONE;
+            slots[1] = Move.NONE;
+        }
+        for (short[] table : history) {
+            for (int i = 0; i < table.length; i++)
+                table[i] /= 2;
+        }
+        Arrays.fill(tried, 0);
+        Arrays.fill(cutoffs, 0);
+        cutoffNodes = 0;
+        firstMoveCutoffs = 0;
+    }
+
+    int killer(int ply, int slot) {
+        return killers[ply][slot];
+    }
+
+    int counterMove(int previousMove) {
+        return previousMove == Move.NONE ? Move.NONE : counterMoves[index(previousMove)];
+    }
+
+    int history(int color, int move) {
+        return history[color][index(move)];
+    }
+
+    /**
+     * A quiet move caused a cutoff: it becomes a killer and the
+     * countermove to the previous move, gains history, and the quiet moves
+     * tried before it lose history.
+     */
+    void updateQuiet(int color, int ply, int move, int previousMove, int depth, int[] quietsTried, int quietCount) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        if (previousMove != Move.NONE)
+            counterMoves[index(previousMove)] = move;
+        int bonus = Math.min(depth * depth, 400);
+        addHistory(color, move, bonus);
+        for (int i = 0; i < quietCount; i++) {
+            if (quietsTried[i] != move)
+                addHistory(color, quietsTried[i], -bonus);
+        }
+    }
+
+    // Moves the score toward the bound, more slowly the closer it is
+    private void addHistory(int color, int move, int bonus) {
+        short[] table = history[color];
+        int i = index(move);
+        table[i] += bonus - table[i] * Math.abs(bonus) / HISTORY_MAX;
+    }
+
+    void recordTried(int stage) {
+        tried[stage]++;
+    }
+
+    void recordCutoff(int stage, boolean firstMove) {
+        cutoffs[stage]++;
+        cutoffNodes++;
+        if (firstMove)
+            firstMoveCutoffs++;
+    }
+
+    /**
+     * Per stage: the share of all cutoffs it produced, and the share of its
+     * own moves that cut off. Also how often the first move cut off.
+     */
+    public String statistics() {
+        StringBuilder sb = new StringBuilder("ordering");
+        for (int stage = 0; stage < tried.length; stage++) {
+            if (tried[stage] == 0)
+                continue;
+            sb.append(' ').append(MovePicker.STAGE_NAMES[stage])
+                .append(' ').append(percent(cutoffs[stage], cutoffNodes)).append("% of cutoffs")
+                .append(" (").append(percent(cutoffs[stage], tried[stage])).append("% hit)");
+        }
+        sb.append(" first-move ").append(percent(firstMoveCutoffs, cutoffNodes)).append('%');
+        return sb.toString();
+    }
+
+    private static long percent(long part, long whole) {
+        return whole == 0 ? 0 : part * 100 / whole;
+    }
+}
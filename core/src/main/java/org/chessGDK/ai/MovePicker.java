@@ -0,0 +1,198 @@
+package org.chessGDK.ai;
+
+import org.chessGDK.logic.Move;
+import org.chessGDK.logic.MoveGenerator;
+import org.chessGDK.logic.Position;
+
+/**
+ * Hands out the legal moves of one node in stages, best guesses first:
+ * the hash move, captures that don't lose material ordered by most
+ * valuable victim and least valuable attacker, the two killers, the
+ * countermove, quiet moves by history, and last the losing captures. Each
+ * stage only scores its moves when it is reached, so a node that cuts off
+ * on the hash move sorts nothing.
+ *
+ * The generator produces all legal moves at once; the picker splits them
+ * into captures and quiet moves and walks the stages over that list. For
+ * quiescence search it stops after the good captures, which prunes the
+ * captures that lose material without searching them.
+ */
+final class MovePicker {
+    static final int HASH = 0;
+    static final int GOOD_CAPTURES = 1;
+    static final int KILLERS = 2;
+    static final int COUNTER = 3;
+    static final int QUIETS = 4;
+    static final int BAD_CAPTURES = 5;
+    private static final int DONE = 6;
+    static final String[] STAGE_NAMES = {"hash", "captures", "killers", "counter", "quiets", "bad-captures"};
+
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final int[] scores = new int[MoveGenerator.MAX_MOVES];
+    private final int[] badCaptures = new int[MoveGenerator.MAX_MOVES];
+    private int count;
+    private int captureEnd;
+    private int badCount;
+
+    private Position pos;
+    private MoveOrdering ordering;
+    private See see;
+    private boolean capturesOnly;
+    private int hashMove;
+    private int killer1;
+    private int killer2;
+    private int counter;
+    private int stage;
+    private int index;
+    // Stage of the move returned last, for the ordering statistics
+    private int lastStage;
+
+    /**
+     * Prepares the node and returns how many legal moves it has, including
+     * any that won't be picked. With capturesOnly only captures and
+     * promotions that SEE doesn't lose are picked.
+     */
+    int init(Position pos, MoveOrdering ordering, See see, int hashMove, int ply, boolean capturesOnly) {
+        this.pos = pos;
+        this.capturesOnly = capturesOnly;
+        this.ordering = ordering;
+        this.see = see;
+        int total = MoveGenerator.generateLegal(pos, moves);
+        count = total;
+        // Captures and promotions to the front
+        captureEnd = 0;
+        for (int i = 0; i < count; i++) {
+            if (isTactical(moves[i])) {
+                int move = moves[i];
+                moves[i] = moves[captureEnd];
+                moves[captureEnd++] = move;
+            }
+        }
+        if (capturesOnly)
+            count = captureEnd;
+        this.hashMove = contains(hashMove, 0, count) ? hashMove : Move.NONE;
+        killer1 = capturesOnly ? Move.NONE : ordering.killer(ply, 0);
+        killer2 = capturesOnly ? Move.NONE : ordering.killer(ply, 1);
+        counter = capturesOnly ? Move.NONE : ordering.counterMove(pos.lastMove());
+        badCount = 0;
+        stage = HASH;
+        return total;
+    }
+
+    private boolean isTactical(int move) {
+        return pos.pieceAt(Move.to(move)) != Position.EMPTY || Move.isEnPassant(move) || Move.promotion(move) != 0;
+    }
+
+    private boolean contains(int move, int start, int end) {
+        if (move == Move.NONE)
+            return false;
+        for (int i = start; i < end; i++) {
+            if (moves[i] == move)
+                return true;
+        }
+        return false;
+    }
+
+    int lastStage() {
+        return lastStage;
+    }
+
+    // The next move to try, or NONE when the node is exhausted
+    int next() {
+        while (true) {
+            switch (stage) {
+                case HASH:
+                    stage = GOOD_CAPTURES;
+                    scoreCaptures();
+                    index = 0;
+                    if (hashMove != Move.NONE)
+                        return found(HASH, hashMove);
+                    break;
+                case GOOD_CAPTURES:
+                    while (index < captureEnd) {
+                        int move = pickBest(index++, captureEnd);
+                        if (move == hashMove)
+                            continue;
+                        // Losing captures wait until after the quiet moves
+                        if (Move.promotion(move) == 0 && see.see(pos, move) < 0) {
+                            badCaptures[badCount++] = move;
+                            continue;
+                        }
+                        return found(GOOD_CAPTURES, move);
+                    }
+                    stage = capturesOnly ? DONE : KILLERS;
+                    index = 0;
+                    break;
+                case KILLERS:
+                    while (index < 2) {
+                        int killer = index++ == 0 ? killer1 : killer2;
+                        if (killer != hashMove && contains(killer, captureEnd, count))
+                            return found(KILLERS, killer);
+                    }
+                    stage = COUNTER;
+                    break;
+                case COUNTER:
+                    stage = QUIETS;
+                    scoreQuiets();
+                    index = captureEnd;
+                    if (counter != hashMove && counter != killer1 && counter != killer2
+                        && contains(counter, captureEnd, count))
+                        return found(COUNTER, counter);
+                    break;
+                case QUIETS:
+                    while (index < count) {
+                        int move = pickBest(index++, count);
+                        if (move != hashMove && move != killer1 && move != killer2 && move != counter)
+                            return found(QUIETS, move);
+                    }
+                    stage = BAD_CAPTURES;
+                    index = 0;
+                    break;
+                case BAD_CAPTURES:
+                    if (index < badCount)
+                        return found(BAD_CAPTURES, badCaptures[index++]);
+                    stage = DONE;
+                    break;
+                default:
+                    return Move.NONE;
+            }
+        }
+    }
+
+    private int found(int stage, int move) {
+        lastStage = stage;
+        return move;
+    }
+
+    private void scoreCaptures() {
+        for (int i = 0; i < captureEnd; i++) {
+            int move = moves[i];
+            int victim = Move.isEnPassant(move) ? Position.PAWN : Position.typeOf(pos.pieceAt(Move.to(move)));
+            int attacker = Position.typeOf(pos.pieceAt(Move.from(move)));
+            int score = victim < 0 ? 0 : See.VALUE[victim] * 8 - attacker;
+            scores[i] = score + (Move.promotion(move) != 0 ? See.VALUE[Move.promotion(move)] : 0);
+        }
+    }
+
+    private void scoreQuiets() {
+        int color = pos.sideToMove();
+        for (int i = captureEnd; i < count; i++)
+            scores[i] = ordering.history(color, moves[i]);
+    }
+
+    // Selection sort one step at a time, since most nodes cut off early
+    private int pickBest(int from, int end) {
+        int best = from;
+        for (int i = from + 1; i < end; i++) {
+            if (scores[i] > scores[best])
+                best = i;
+        }
+        int move = moves[best];
+        moves[best] = moves[from];
+        moves[from] = move;
+        int score = scores[best];
+        scores[best] = scores[from];
+        scores[from] = score;
+        return move;
+    }
+}
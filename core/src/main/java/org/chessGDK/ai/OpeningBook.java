@@ -0,0 +1,126 @@
+package org.chessGDK.ai;
+
+import org.chessGDK.logic.Move;
+import org.chessGDK.logic.MoveGenerator;
+import org.chessGDK.logic.Position;
+import org.chessGDK.utils.AssetPaths;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Opening book in the Polyglot .bin layout, memory-mapped so the file is
+ * never copied onto the heap. Entries are 16 big-endian bytes: key, move,
+ * weight and a learn field, sorted by key, so a probe is a binary search.
+ * When a position has several book moves one is picked at random in
+ * proportion to its weight.
+ *
+ * The keys are the standard Polyglot ones from PolyglotKey, so any
+ * Polyglot book can be dropped in. The shipped one is built from
+ * assets/book/openings.txt by BookBuilder.
+ */
+public class OpeningBook implements Closeable {
+    static final int ENTRY_BYTES = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer entries;
+    private final int count;
+    private final Random random = new Random();
+    private final int[] legal = new int[MoveGenerator.MAX_MOVES];
+
+    public OpeningBook(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        count = (int) (channel.size() / ENTRY_BYTES);
+        System.out.println("Opening book: " + count + " entries from " + path);
+    }
+
+    /**
+     * The book in assets, or null when there is none. The assets are
+     * found as AssetPaths.root describes, as for Stockfish and the
+     * bitbases.
+     */
+    public static OpeningBook openDefault() {
+        Path path = Path.of(AssetPaths.root(), "book", "book.bin");
+        try {
+            return new OpeningBook(path);
+        } catch (IOException e) {
+            System.out.println("No opening book at " + path);
+            return null;
+        }
+    }
+
+    /**
+     * A legal book move for the position, chosen by weight, or NONE when
+     * the position is not in the book.
+     */
+    public synchronized int probe(Position pos) {
+        long key = PolyglotKey.of(pos);
+        int low = 0;
+        int high = count;
+        // First entry whose key is not below the position's
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(mid), key) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        int total = 0;
+        for (int i = low; i < count && keyAt(i) == key; i++)
+            total += weightAt(i);
+        if (total == 0)
+            return Move.NONE;
+
+        int pick = random.nextInt(total);
+        for (int i = low; i < count && keyAt(i) == key; i++) {
+            pick -= weightAt(i);
+            if (pick < 0)
+                return toLegal(pos, entries.getShort(i * ENTRY_BYTES + 8) & 0xFFFF);
+        }
+        return Move.NONE;
+    }
+
+    private long keyAt(int i) {
+        return entries.getLong(i * ENTRY_BYTES);
+    }
+
+    private int weightAt(int i) {
+        return entries.getShort(i * ENTRY_BYTES + 10) & 0xFFFF;
+    }
+
+    // Polyglot packs to-file, to-row, from-file, from-row and promotion in
+    // three-bit fields, and writes castling as the king taking its rook
+    private int toLegal(Position pos, int bookMove) {
+        int to = Position.square(bookMove & 7, (bookMove >>> 3) & 7);
+        int from = Position.square((bookMove >>> 6) & 7, (bookMove >>> 9) & 7);
+        int promotion = (bookMove >>> 12) & 7;
+        int count = MoveGenerator.generateLegal(pos, legal);
+        for (int i = 0; i < count; i++) {
+            int move = legal[i];
+            int target = Move.isCastle(move) ? (Move.to(move) > Move.from(move) ? Move.to(move) + 1 : Move.to(move) - 2)
+                : Move.to(move);
+            if (Move.from(move) == from && target == to && Move.promotion(move) == promotion)
+                return move;
+        }
+        return Move.NONE;
+    }
+
+    static int toBookMove(int move) {
+        int to = Move.to(move);
+        if (Move.isCastle(move))
+            to = to > Move.from(move) ? to + 1 : to - 2;
+        int from = Move.from(move);
+        return (to & 7) | ((to >>> 3) << 3) | ((from & 7) << 6) | ((from >>> 3) << 9) | (Move.promotion(move) << 12);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
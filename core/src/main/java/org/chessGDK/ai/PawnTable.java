@@ -0,0 +1,59 @@
+package org.chessGDK.ai;
+
+import java.util.Arrays;
+
+/**
+ * Pawn-structure scores cached by the pawn-only Zobrist key. Pawns move
+ * rarely, so most positions in a search share their structure with one
+ * already scored. Each search thread has its own table, so there is no
+ * locking; a collision just overwrites the slot.
+ */
+public class PawnTable {
+    private static final int SIZE = 1 << 14;
+
+    // A position without pawns has key 0 and scores 0, so the empty
+    // slots are already valid entries for it
+    private final long[] keys = new long[SIZE];
+    private final int[] scores = new int[SIZE];
+    private long hits;
+    private long misses;
+
+    boolean contains(long pawnKey) {
+        if (keys[(int) pawnKey & (SIZE - 1)] == pawnKey) {
+            hits++;
+            return true;
+        }
+        misses++;
+        return false;
+    }
+
+    // Only valid right after contains returned true for the same key
+    int score(long pawnKey) {
+        return scores[(int) pawnKey & (SIZE - 1)];
+    }
+
+    void store(long pawnKey, int score) {
+        int slot = (int) pawnKey & (SIZE - 1);
+        keys[slot] = pawnKey;
+        scores[slot] = score;
+    }
+
+    // Starts the hit rate over; the entries are kept
+    public void newSearch() {
+        hits = 0;
+        misses = 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(scores, 0);
+        hits = 0;
+        misses = 0;
+    }
+
+    // Percentage of lookups answered from the table
+    public long hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : hits * 100 / total;
+    }
+}
@@ -0,0 +1,386 @@
+package org.chessGDK.ai;
+
+import org.chessGDK.logic.Bitbase;
+import org.chessGDK.logic.Move;
+import org.chessGDK.logic.MoveGenerator;
+import org.chessGDK.logic.Position;
+
+/**
+ * Iterative-deepening negamax with alpha-beta and principal variation
+ * search. The first move at each node gets a full window and the rest a
+ * null window, re-searched only when one beats alpha. At the horizon a
+ * quiescence search plays out captures until the position is quiet. Results go into a
+ * transposition table that may be shared with other searches. Moves come
+ * from a MovePicker per ply, ordered with this thread's MoveOrdering
+ * tables. Buffers are sized up front, so a search allocates nothing per
+ * node.
+ */
+public class Search {
+    public static final int INFINITE = 32000;
+    public static final int MATE = 31000;
+    public static final int MAX_PLY = 128;
+    // Bitbase wins score this plus a mop-up term, below every mate score
+    public static final int KNOWN_WIN = 20000;
+    private static final int NO_SCORE = Integer.MIN_VALUE;
+    private static final long DARK_CORNERS = (1L << 0) | (1L << 63);
+    private static final long LIGHT_CORNERS = (1L << 7) | (1L << 56);
+    private static final long LIGHT_SQUARES = 0x55AA55AA55AA55AAL;
+    // Added to a capture's gain before delta pruning gives up on it
+    private static final int DELTA_MARGIN = 200;
+
+    private final Position pos;
+    private final Evaluation eval;
+    private final TranspositionTable tt;
+    private final MovePicker[] pickers = new MovePicker[MAX_PLY];
+    private final MoveOrdering ordering = new MoveOrdering();
+    private final See see = new See();
+    private final PawnTable pawns = new PawnTable();
+    private final int[][] quietsTried = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    // Triangular principal variation table
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    // Line from the last finished iteration, tried first in the next one
+    private final int[] previousPv = new int[MAX_PLY];
+    private int previousPvLength;
+
+    private long nodes;
+    // Nodes inside quiescence search, also counted in nodes
+    private long qnodes;
+    private TimeManager time;
+    private int completedDepth;
+    private volatile boolean stopped;
+
+    public Search(Position pos, Evaluation eval, TranspositionTable tt) {
+        this.pos = pos;
+        this.eval = eval;
+        this.tt = tt;
+        for (int i = 0; i < MAX_PLY; i++)
+            pickers[i] = new MovePicker();
+    }
+
+    public static final class Result {
+        public final int bestMove;
+        public final int ponderMove;
+        public final int score;
+        public final int depth;
+        public final long nodes;
+        public final long qnodes;
+
+        Result(int bestMove, int ponderMove, int score, int depth, long nodes, long qnodes) {
+            this.bestMove = bestMove;
+            this.ponderMove = ponderMove;
+            this.score = score;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.qnodes = qnodes;
+        }
+    }
+
+    // Makes a running search return as soon as it can
+    public void stop() {
+        stopped = true;
+    }
+
+    // Clears an earlier stop; call before handing the search to a thread
+    public void reset() {
+        stopped = false;
+    }
+
+    /**
+     * Searches one ply deeper each iteration until maxDepth or the time
+     * runs out, and returns the result of the last finished iteration.
+     */
+    public Result search(int maxDepth, long movetimeMillis) {
+        reset();
+        tt.newSearch();
+        TimeManager fixed = new TimeManager();
+        fixed.startFixed(movetimeMillis);
+        return search(maxDepth, fixed, 0);
+    }
+
+    /**
+     * One thread of a Lazy SMP search. Thread 0 reports progress; helpers
+     * start on odd or even depths by their id so the threads spread over
+     * different iterations and fill the shared table for each other. Only
+     * thread 0 asks the time manager whether to start another iteration.
+     */
+    public Result search(int maxDepth, TimeManager time, int threadId) {
+        this.time = time;
+        ordering.newSearch();
+        pawns.newSearch();
+        nodes = 0;
+        qnodes = 0;
+        completedDepth = 0;
+        previousPvLength = 0;
+        int bestMove = Move.NONE;
+        int ponderMove = Move.NONE;
+        int bestScore = 0;
+        int stableIterations = 0;
+        maxDepth = Math.min(maxDepth, MAX_PLY - 1);
+
+        for (int depth = 1 + threadId % 2; depth <= maxDepth; depth++) {
+            int score = negamax(depth, -INFINITE, INFINITE, 0);
+            if (stopped)
+                break;
+            int previousScore = completedDepth > 0 ? bestScore : score;
+            int previousBest = bestMove;
+            completedDepth = depth;
+            bestScore = score;
+            previousPvLength = pvLength[0];
+            System.arraycopy(pv[0], 0, previousPv, 0, previousPvLength);
+            bestMove = previousPvLength > 0 ? previousPv[0] : Move.NONE;
+            stableIterations = bestMove == previousBest ? stableIterations + 1 : 0;
+            ponderMove = previousPvLength > 1 ? previousPv[1] : Move.NONE;
+            if (threadId == 0)
+                System.out.println("info depth " + depth + " score " + scoreText(score) + " nodes " + nodes
+                    + " qnodes " + qnodes + " time " + time.elapsed() + " hashfull " + tt.hashfull()
+                    + " pv " + pvText());
+            // No point searching deeper once a forced mate is found
+            if (Math.abs(score) >= MATE - MAX_PLY)
+                break;
+            if (threadId == 0 && time.stopAfterIteration(stableIterations, score, previousScore))
+                break;
+        }
+        if (threadId == 0)
+            System.out.println("info string " + ordering.statistics() + " pawn-hash " + pawns.hitRate() + "%");
+        return new Result(bestMove, ponderMove, bestScore, completedDepth, nodes, qnodes);
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        pvLength[ply] = ply;
+        if ((++nodes & 2047) == 0 && completedDepth > 0 && time.hardStop())
+            stopped = true;
+        if (stopped)
+            return 0;
+        if (ply > 0 && (pos.halfmoveClock() >= 100 || pos.repetitionCount() >= 1))
+            return 0;
+
+        // Cut off from the table only outside the principal variation,
+        // so the line reported stays whole
+        long entry = tt.probe(pos.key());
+        int ttMove = Move.NONE;
+        if (entry != 0) {
+            ttMove = TranspositionTable.move(entry);
+            if (ply > 0 && beta - alpha == 1 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                    || (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+                    || (bound == TranspositionTable.BOUND_UPPER && score <= alpha))
+                    return score;
+            }
+        }
+
+        boolean inCheck = pos.isInCheck();
+        // A capture or pawn move into a small ending is settled by its
+        // bitbase; inside the ending the search goes on so it can make progress
+        if (ply > 0 && !inCheck && pos.halfmoveClock() == 0) {
+            int score = bitbaseScore();
+            if (score != NO_SCORE)
+                return score;
+        }
+        // Look one ply further out of check so mates are not cut off
+        if (inCheck)
+            depth++;
+        if (ply >= MAX_PLY - 1)
+            return eval.evaluate(pos, pawns);
+        if (depth <= 0)
+            return quiescence(alpha, beta, ply);
+
+        // Without a table move, follow the last iteration's line
+        if (ttMove == Move.NONE && ply < previousPvLength)
+            ttMove = previousPv[ply];
+        MovePicker picker = pickers[ply];
+        if (picker.init(pos, ordering, see, ttMove, ply, false) == 0)
+            return inCheck ? -MATE + ply : 0;
+
+        int originalAlpha = alpha;
+        int bestMove = Move.NONE;
+        int previousMove = pos.lastMove();
+        int[] quiets = quietsTried[ply];
+        int quietCount = 0;
+        boolean first = true;
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            boolean quiet = pos.pieceAt(Move.to(move)) == Position.EMPTY && !Move.isEnPassant(move)
+                && Move.promotion(move) == 0;
+            ordering.recordTried(picker.lastStage());
+            pos.makeMove(move);
+            int score;
+            if (first) {
+                score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            } else {
+                score = -negamax(depth - 1, -alpha - 1, -alpha, ply + 1);
+                if (score > alpha && score < beta)
+                    score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            }
+            pos.unmakeMove();
+            if (stopped)
+                return 0;
+
+            if (score > alpha) {
+                alpha = score;
+                bestMove = move;
+                pv[ply][ply] = move;
+                System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, pvLength[ply + 1] - ply - 1);
+                pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+                if (alpha >= beta) {
+                    ordering.recordCutoff(picker.lastStage(), first);
+                    if (quiet)
+                        ordering.updateQuiet(pos.sideToMove(), ply, move, previousMove, depth, quiets, quietCount);
+                    break;
+                }
+            }
+            if (quiet)
+                quiets[quietCount++] = move;
+            first = false;
+        }
+        int bound = alpha >= beta ? TranspositionTable.BOUND_LOWER
+            : alpha > originalAlpha ? TranspositionTable.BOUND_EXACT : TranspositionTable.BOUND_UPPER;
+        tt.store(pos.key(), bestMove, toTable(alpha, ply), depth, bound);
+        return alpha;
+    }
+
+    /**
+     * Searches captures only until the position is quiet. The side to move
+     * may stand pat on the static evaluation instead of capturing. Captures
+     * that can't lift the score to alpha even with a margin, and captures
+     * that SEE says lose material, are skipped. In check every evasion is
+     * searched, since standing pat isn't an option.
+     */
+    private int quiescence(int alpha, int beta, int ply) {
+        pvLength[ply] = ply;
+        qnodes++;
+        if ((++nodes & 2047) == 0 && completedDepth > 0 && time.hardStop())
+            stopped = true;
+        if (stopped)
+            return 0;
+        if (ply >= MAX_PLY - 1)
+            return eval.evaluate(pos, pawns);
+
+        boolean inCheck = pos.isInCheck();
+        int standPat = 0;
+        if (!inCheck) {
+            int score = bitbaseScore();
+            if (score != NO_SCORE)
+                return score;
+            standPat = eval.evaluate(pos, pawns);
+            if (standPat >= beta)
+                return standPat;
+            if (standPat > alpha)
+                alpha = standPat;
+        }
+
+        MovePicker picker = pickers[ply];
+        if (picker.init(pos, ordering, see, Move.NONE, ply, !inCheck) == 0)
+            return inCheck ? -MATE + ply : 0;
+
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            if (!inCheck) {
+                int victim = pos.pieceAt(Move.to(move));
+                int gain = victim == Position.EMPTY ? See.VALUE[Position.PAWN] : See.VALUE[Position.typeOf(victim)];
+                if (Move.promotion(move) != 0)
+                    gain += See.VALUE[Move.promotion(move)] - See.VALUE[Position.PAWN];
+                if (standPat + gain + DELTA_MARGIN <= alpha)
+                    continue;
+            }
+            pos.makeMove(move);
+            int score = -quiescence(-beta, -alpha, ply + 1);
+            pos.unmakeMove();
+            if (stopped)
+                return 0;
+            if (score > alpha) {
+                alpha = score;
+                pv[ply][ply] = move;
+                System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, pvLength[ply + 1] - ply - 1);
+                pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+                if (alpha >= beta)
+                    break;
+            }
+        }
+        return alpha;
+    }
+
+    // Bitbase result for the side to move, or NO_SCORE outside the bitbases
+    private int bitbaseScore() {
+        if (Long.bitCount(pos.occupied()) > 4)
+            return NO_SCORE;
+        int wdl = Bitbase.probe(pos);
+        if (wdl == Bitbase.UNKNOWN)
+            return NO_SCORE;
+        if (wdl == Bitbase.DRAW)
+            return 0;
+        return wdl * knownWin(wdl == Bitbase.WIN ? pos.sideToMove() : pos.sideToMove() ^ 1);
+    }
+
+    /**
+     * Score of a won bitbase ending for the winning side. The bitbase only
+     * says the ending is won, so this gives the search a way forward: the
+     * lone king toward the edge, or for KBNK toward a corner the bishop
+     * covers, the kings closer together, and the pawn further up.
+     */
+    private int knownWin(int strong) {
+        int weakKing = pos.kingSquare(strong ^ 1);
+        int strongKing = pos.kingSquare(strong);
+        int score = KNOWN_WIN + 4 * (14 - manhattan(strongKing, weakKing));
+        long bishops = pos.pieces(strong, Position.BISHOP);
+        if (bishops != 0) {
+            long corners = (bishops & LIGHT_SQUARES) != 0 ? LIGHT_CORNERS : DARK_CORNERS;
+            int a = Long.numberOfTrailingZeros(corners);
+            int b = 63 - Long.numberOfLeadingZeros(corners);
+            score += 20 * (14 - Math.min(manhattan(weakKing, a), manhattan(weakKing, b)));
+        } else {
+            int col = weakKing & 7;
+            int row = weakKing >>> 3;
+            score += 10 * (Math.max(3 - col, col - 4) + Math.max(3 - row, row - 4));
+        }
+        long pawn = pos.pieces(strong, Position.PAWN);
+        if (pawn != 0) {
+            int row = Long.numberOfTrailingZeros(pawn) >>> 3;
+            score += 20 * (strong == Position.WHITE ? row : 7 - row);
+        }
+        return score;
+    }
+
+    private static int manhattan(int a, int b) {
+        return Math.abs((a & 7) - (b & 7)) + Math.abs((a >>> 3) - (b >>> 3));
+    }
+
+    // Mate scores are stored relative to the node, not the root
+    private static int toTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY)
+            return score + ply;
+        if (score <= -MATE + MAX_PLY)
+            return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY)
+            return score - ply;
+        if (score <= -MATE + MAX_PLY)
+            return score + ply;
+        return score;
+    }
+
+    private String pvText() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < previousPvLength; i++) {
+            Move.appendUci(sb, previousPv[i]);
+            sb.append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    static String scoreText(int score) {
+        if (Math.abs(score) < MATE - MAX_PLY)
+            return "cp " + score;
+        int plies = MATE - Math.abs(score);
+        return "mate " + (score > 0 ? (plies + 1) / 2 : -plies / 2);
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,285 @@
+package org.chessGDK.ai;
+
+import org.chessGDK.logic.Fen;
+import org.chessGDK.logic.Move;
+import org.chessGDK.logic.MoveGenerator;
+import org.chessGDK.logic.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The built-in engine. It searches in this process, so there is nothing to
+ * spawn and memory use is fixed when the engine is created. The
+ * transposition table lives for the whole game, so each move starts with
+ * what earlier searches learned.
+ *
+ * With more than one thread it runs a Lazy SMP search: the game loop
+ * thread and the helpers all search the same root on their own copies of
+ * the position, and share what they find only through the table.
+ *
+ * Pondering runs the same search on a thread of its own, on the position
+ * after the predicted reply, so the game loop is free while the player
+ * thinks. getBestMoveAsync searches on that thread too.
+ */
+public class SearchEngine implements ChessEngine {
+    public static final int DEFAULT_HASH_MB = 16;
+
+    private final Position position = new Position();
+    private final TranspositionTable tt;
+    // Index 0 searches position on the calling thread; the rest are helpers
+    private final Search[] searches;
+    private final Position[] helperPositions;
+    private final ExecutorService helpers;
+    private final int maxDepth;
+    private final TimeManager time = new TimeManager();
+    // Started on the first ponder or asynchronous search
+    private ExecutorService ponderThread;
+    // Fixed-time search from getBestMoveAsync, stopped by the next call
+    private CompletableFuture<String[]> background;
+    // Search on the position after the predicted reply, and whether the
+    // real move matched it
+    private Future<Search.Result> pondering;
+    private boolean ponderHit;
+    // Taken before the search starts moving pieces on position
+    private long ponderKey;
+    private int ponderPly;
+
+    public SearchEngine(int difficulty, String fen) {
+        this(difficulty, fen, new Evaluation(), DEFAULT_HASH_MB, 1);
+    }
+
+    public SearchEngine(int difficulty, String fen, Evaluation eval, int hashMb, int threads) {
+        threads = Math.max(1, threads);
+        tt = new TranspositionTable(hashMb);
+        searches = new Search[threads];
+        helperPositions = new Position[threads];
+        searches[0] = new Search(position, eval, tt);
+        for (int i = 1; i < threads; i++) {
+            helperPositions[i] = new Position();
+            searches[i] = new Search(helperPositions[i], eval, tt);
+        }
+        helpers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        // Same 0-20 scale as Stockfish's Skill Level; free play has none
+        maxDepth = difficulty < 0 ? Search.MAX_PLY : 2 + difficulty / 2;
+        setPosition(fen);
+        System.out.println("Built-in engine initialized, max depth " + maxDepth + ", hash " + tt.sizeMb()
+            + "MB, " + threads + " threads");
+    }
+
+    private void setPosition(String fen) {
+        UciClient.setPosition(position, fen);
+    }
+
+    /**
+     * A position matching the one pondered on lets the ponder search run
+     * on against the clock; any other stops it.
+     */
+    @Override
+    public void sendPosition(String fen) {
+        stopBackground();
+        if (pondering != null && !ponderHit) {
+            Position next = new Position();
+            UciClient.setPosition(next, fen);
+            if (next.key() == ponderKey && next.ply() == ponderPly) {
+                ponderHit = true;
+                time.ponderHit();
+                System.out.println("Ponder hit");
+                return;
+            }
+            System.out.println("Ponder miss");
+        }
+        stopPondering();
+        setPosition(fen);
+    }
+
+    @Override
+    public void ponder(String predicted, long wtime, long btime, long winc, long binc) {
+        stopBackground();
+        stopPondering();
+        int[] legal = new int[MoveGenerator.MAX_MOVES];
+        int move = Move.find(legal, MoveGenerator.generateLegal(position, legal), predicted);
+        if (move == Move.NONE)
+            return;
+        position.makeMove(move);
+        ponderKey = position.key();
+        ponderPly = position.ply();
+        boolean white = position.isWhiteToMove();
+        time.startPonder(white ? wtime : btime, white ? winc : binc, position.fullmoveNumber());
+        // Reset here, so a stop sent right away can't be cleared by the reset
+        searches[0].reset();
+        pondering = ponderThread().submit(this::runSearch);
+        System.out.println("Pondering on " + predicted);
+    }
+
+    private ExecutorService ponderThread() {
+        if (ponderThread == null) {
+            ponderThread = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "search-ponder");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return ponderThread;
+    }
+
+    /**
+     * Starts the fixed-time search on the ponder thread and returns at once.
+     * Any later call stops it first, as they all use the same position.
+     */
+    @Override
+    public CompletableFuture<String[]> getBestMoveAsync() {
+        stopBackground();
+        stopPondering();
+        time.startFixed(FIXED_MOVETIME);
+        searches[0].reset();
+        background = CompletableFuture.supplyAsync(() -> toUci(runSearch()), ponderThread());
+        return background;
+    }
+
+    // Cuts the asynchronous search short; it still completes with its move
+    private void stopBackground() {
+        if (background == null)
+            return;
+        searches[0].stop();
+        try {
+            background.join();
+        } catch (CompletionException e) {
+            System.out.println("Background search failed: " + e.getMessage());
+        }
+        background = null;
+    }
+
+    // Ends a ponder search the real move didn't match and takes back the
+    // predicted move
+    private void stopPondering() {
+        if (pondering == null)
+            return;
+        searches[0].stop();
+        finishPondering();
+        if (!ponderHit)
+            position.unmakeMove();
+        ponderHit = false;
+    }
+
+    private Search.Result finishPondering() {
+        Future<Search.Result> search = pondering;
+        pondering = null;
+        try {
+            return search.get();
+        } catch (InterruptedException | ExecutionException e) {
+            System.out.println("Ponder search failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void stop() {
+        stopBackground();
+        stopPondering();
+    }
+
+    @Override
+    public String[] getBestMove() {
+        stopBackground();
+        stopPondering();
+        time.startFixed(FIXED_MOVETIME);
+        return toUci(search());
+    }
+
+    @Override
+    public String[] getBestMove(long wtime, long btime, long winc, long binc) {
+        stopBackground();
+        if (ponderHit) {
+            ponderHit = false;
+            Search.Result result = finishPondering();
+            if (result != null)
+                return toUci(result);
+        }
+        stopPondering();
+        boolean white = position.isWhiteToMove();
+        time.start(white ? wtime : btime, white ? winc : binc, position.fullmoveNumber());
+        return toUci(search());
+    }
+
+    private static String[] toUci(Search.Result result) {
+        String[] moves = {"(none)", "", Search.scoreText(result.score), Integer.toString(result.depth)};
+        if (result.bestMove != Move.NONE)
+            moves[0] = Move.toUci(result.bestMove);
+        if (result.ponderMove != Move.NONE)
+            moves[1] = Move.toUci(result.ponderMove);
+        return moves;
+    }
+
+    private Search.Result search() {
+        searches[0].reset();
+        return runSearch();
+    }
+
+    // Runs every thread until the main one finishes, then stops the helpers
+    // and keeps the deepest result. searches[0] is reset by the caller
+    private Search.Result runSearch() {
+        tt.newSearch();
+        List<Future<Search.Result>> results = new ArrayList<>(searches.length - 1);
+        for (int i = 1; i < searches.length; i++) {
+            int id = i;
+            helperPositions[i].copyFrom(position);
+            searches[i].reset();
+            results.add(helpers.submit(() -> searches[id].search(maxDepth, time, id)));
+        }
+        Search.Result best = searches[0].search(maxDepth, time, 0);
+        long nodes = best.nodes;
+        long qnodes = best.qnodes;
+        for (int i = 1; i < searches.length; i++)
+            searches[i].stop();
+        for (Future<Search.Result> future : results) {
+            try {
+                Search.Result result = future.get();
+                nodes += result.nodes;
+                qnodes += result.qnodes;
+                if (result.depth > best.depth && result.bestMove != Move.NONE)
+                    best = result;
+            } catch (InterruptedException | ExecutionException e) {
+                System.out.println("Search helper failed: " + e.getMessage());
+            }
+        }
+        if (searches.length > 1)
+            System.out.println("info depth " + best.depth + " nodes " + nodes + " qnodes " + qnodes
+                + " threads " + searches.length);
+        return best;
+    }
+
+    @Override
+    public String[] getBestMove(String fen) {
+        stopBackground();
+        stopPondering();
+        setPosition(fen);
+        return getBestMove();
+    }
+
+    @Override
+    public void printBoard() {
+        System.out.println("Fen: " + Fen.write(position));
+    }
+
+    @Override
+    public void close() {
+        for (Search search : searches)
+            search.stop();
+        if (helpers != null)
+            helpers.shutdownNow();
+        if (ponderThread != null)
+            ponderThread.shutdownNow();
+        System.out.println("Built-in engine closed");
+    }
+}
@@ -0,0 +1,67 @@
+package org.chessGDK.ai;
+
+import org.chessGDK.logic.Move;
+import org.chessGDK.logic.Position;
+
+/**
+ * Static exchange evaluation: the material a capture wins or loses once
+ * both sides have recaptured on the square with their cheapest attacker.
+ * Attackers are found again after each capture, so sliders behind the
+ * pieces that moved join in. One instance per search thread, since it
+ * keeps its swap list between calls.
+ */
+public final class See {
+    static final int[] VALUE = {100, 320, 330, 500, 900, 20000};
+
+    private final int[] gain = new int[32];
+
+    public int see(Position pos, int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        long occupied = pos.occupied();
+        int attacker = Position.typeOf(pos.pieceAt(from));
+        int side = Position.colorOf(pos.pieceAt(from)) ^ 1;
+
+        if (Move.isEnPassant(move)) {
+            gain[0] = VALUE[Position.PAWN];
+            occupied ^= 1L << (side == Position.BLACK ? to - 8 : to + 8);
+        } else {
+            int victim = pos.pieceAt(to);
+            gain[0] = victim == Position.EMPTY ? 0 : VALUE[Position.typeOf(victim)];
+        }
+        if (Move.promotion(move) != 0) {
+            attacker = Move.promotion(move);
+            gain[0] += VALUE[attacker] - VALUE[Position.PAWN];
+        }
+        occupied ^= 1L << from;
+
+        int depth = 0;
+        while (depth < gain.length - 1) {
+            long ours = pos.attackersTo(to, occupied) & occupied & pos.pieces(side);
+            if (ours == 0)
+                break;
+            int type = Position.PAWN;
+            long candidates = 0;
+            for (; type <= Position.KING; type++) {
+                candidates = ours & pos.pieces(side, type);
+                if (candidates != 0)
+                    break;
+            }
+            depth++;
+            // What the side to move stands to win if it captures here
+            gain[depth] = VALUE[attacker] - gain[depth - 1];
+            // Even before any recapture this loses, so the side declines
+            if (Math.max(-gain[depth - 1], gain[depth]) < 0) {
+                depth--;
+                break;
+            }
+            attacker = type;
+            occupied ^= candidates & -candidates;
+            side ^= 1;
+        }
+        // Each side may decline to recapture if that would lose material
+        for (; depth > 0; depth--)
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+        return gain[0];
+    }
+}
@@ -2,238 +2,269 @@ package org.chessGDK.ai;
 
 import java.io.*;
 import java.lang.ProcessBuilder;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.jar.Attributes;
-import java.util.jar.Manifest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
+import org.chessGDK.utils.AssetPaths;
+
+public class StockfishAI implements ChessEngine {
+    private static final String MOVETIME = "go movetime " + FIXED_MOVETIME;
 
-public class StockfishAI {
     private final Process stockfishProcess;
-    private final BufferedReader input;
-    private final BufferedWriter output;
+    private final UciClient uci;
     private final int depth;
     private int difficulty = 0;
-    private String FEN;
-    private List<String> returnList;
+    private int threads;
+    private int hashMb;
+    // Set while a game has this engine leased from the pool
+    private EnginePool pool;
+    // Search still running that nobody waits for, stopped before the next one
+    private CompletableFuture<String[]> pending;
+    // Search on the predicted reply, and the position it searches
+    private CompletableFuture<String[]> pondering;
+    private String ponderPosition;
+    // A ponder search the real move matched, returned by the next clock search
+    private CompletableFuture<String[]> ponderHit;
+    // Sent in the same write as the next go
+    private String position = "position startpos";
+    // Last info line with a principal variation, logged with the best move
+    private volatile String lastInfo = "";
+
+    public StockfishAI(int depth, int difficulty, int threads, int hashMb, String fen) throws IOException {
+        this(startStockfish(), depth, difficulty, threads, hashMb, fen);
+    }
 
-    public StockfishAI(int depth, int difficulty, String fen) throws IOException {
-        String path = System.getProperty("assets.path");
+    // Talks to an engine process that is already running
+    StockfishAI(Process process, int depth, int difficulty, int threads, int hashMb, String fen) throws IOException {
         this.depth = depth;
-        returnList = new ArrayList<String>();
-        if (path == null) {
-            path = getPathForJar(path);
-        }
-        System.out.println("Root Path: " + path);
-        FileHandle stockfishHandle = Gdx.files.local(path + "stockfish/stockfish-windows-x86-64-avx2.exe");
-        ProcessBuilder processBuilder = new ProcessBuilder(stockfishHandle.path());
-        stockfishProcess = processBuilder.start();
-        // Sets input and output
-        input = new BufferedReader(new InputStreamReader(stockfishProcess.getInputStream()));
-        output = new BufferedWriter(new OutputStreamWriter(stockfishProcess.getOutputStream()));
+        stockfishProcess = process;
+        uci = new UciClient(stockfishProcess.getInputStream(), stockfishProcess.getOutputStream(), "stockfish");
+        uci.setInfoListener(line -> {
+            if (line.contains(" pv "))
+                lastInfo = line;
+        });
 
-        sendCommand("uci");
+        await(uci.uci());
         this.difficulty = difficulty;
         if (difficulty >= 0)
             setDifficulty();
-        waitForResponse();
+        // Defaults are one thread and a 16MB hash
+        this.threads = threads;
+        this.hashMb = hashMb;
+        setOption("Threads", threads);
+        setOption("Hash", hashMb);
+        uci.send("setoption name Ponder value true");
+        await(uci.isReady());
         System.out.println("Stockfish: Universal Chess Interface - initialized");
         setPosition(fen);
-        // Close streams and process when done
     }
 
-    private static String getPathForJar(String path) {
-        try {
-            // Locate and open the manifest file in the JAR
-            InputStream manifestStream = StockfishAI.class.getResourceAsStream("/META-INF/MANIFEST.MF");
-            if (manifestStream != null) {
-                Manifest manifest = new Manifest(manifestStream);
-                Attributes attributes = manifest.getMainAttributes();
-
-                // Retrieve the "Asset-Path" property or any other property you defined
-                path = attributes.getValue("Root-Path");
-                System.out.println("Root Path from Manifest: " + path);
-            } else {
-                System.err.println("Manifest not found in JAR.");
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return path;
+    private static Process startStockfish() throws IOException {
+        String path = AssetPaths.root();
+        System.out.println("Root Path: " + path);
+        FileHandle stockfishHandle = Gdx.files.local(path + "stockfish/stockfish-windows-x86-64-avx2.exe");
+        ProcessBuilder processBuilder = new ProcessBuilder(stockfishHandle.path());
+        return processBuilder.start();
     }
 
-    // Send a command to Stockfish will add newline before sending
-    private boolean sendCommand(String command) {
-        returnList.clear();
-        //System.out.println("Command sent: " + command);
-        if (!stockfishProcess.isAlive()) {
-            System.out.println("Stockfish process is dead");
-            return false;
-        }
+    // Waits for a reply, turning a dead engine into an IOException
+    private static <T> T await(CompletableFuture<T> reply) throws IOException {
         try {
-            output.write(command + "\n");
-            output.flush();
-        } catch (IOException e) {
-            System.out.println("Error writing to Stockfish: " + e.getMessage());
+            return reply.join();
+        } catch (CompletionException e) {
+            throw new IOException("Stockfish stopped answering", e.getCause());
         }
-        return true;
-        //System.out.println("command sent :" + command);
     }
 
-    private String getLine() {
-        String line = null;
-        try {
-            line = input.readLine();
-            if (line == null)
-                return null;
-            returnList.add(line);
-        } catch (IOException e) {
-            System.out.println("Error reading from Stockfish: " + e.getMessage());
-        }
-        return line;
+    private void setDifficulty() {
+        setOption("Skill Level", difficulty);
     }
 
-    private void setDifficulty() {
-        String command = "setoption name Skill Level value " + difficulty;
-        sendCommand(command);
+    private void setOption(String name, int value) {
+        uci.send("setoption name " + name + " value " + value);
     }
 
     private void setPosition(String fen) {
-        if (fen.contains("startpos"))
-            sendCommand(fen);
-        else
-            sendCommand("position fen " + fen);
-        updateFEN();
+        position = UciClient.positionCommand(fen);
     }
 
-    public void sendPosition(String fen) {
-        setPosition(fen);
+    /**
+     * Stops a search nobody waits for, sets the position and starts the
+     * next search, all in one write. The replies come back in the same
+     * order, so the stopped search's bestmove can't be mistaken for this one.
+     */
+    private CompletableFuture<String[]> search(String go) {
+        return search(position, go);
     }
 
-    // Wait for Stockfish's response
-    private void waitForResponse(){
-        String line;
-        while ((line = getLine()) != null) {
-            System.out.println(line);
-            if (line.contains("uciok") || line.contains("readyok")) {
-                break;
-            }
-        }
+    private CompletableFuture<String[]> search(String setup, String go) {
+        dropPonder();
+        boolean stop = pending != null && !pending.isDone();
+        pending = null;
+        lastInfo = "";
+        CompletableFuture<String[]> reply = stop ? uci.go("stop", setup, go) : uci.go(setup, go);
+        return reply.thenApply(moves -> {
+            String info = lastInfo;
+            System.out.println("Stockfish: " + info);
+            return new String[] {moves[0], moves[1], scoreOf(info), depthOf(info)};
+        });
     }
 
-    private String[] readMove(){
-        String[] moves = {"", ""};
-        String line;
-        while ((line = getLine()) != null) {
-            //System.out.println("Stockfish: " + line);
-            if (line.startsWith("bestmove")) {
-                moves[0] = line.split(" ")[1];  // Extract the move from the response
-                if (line.split(" ").length > 2)
-                    moves[1] = line.split(" ")[3];
-                break;
-            }
+    // The depth from an info line, or "" if it has none
+    private static String depthOf(String info) {
+        String[] parts = info.split(" ");
+        for (int i = 0; i + 1 < parts.length; i++) {
+            if (parts[i].equals("depth"))
+                return parts[i + 1];
         }
-        return moves;
+        return "";
     }
 
-    public boolean checkmate() throws IOException {
-        //setPosition(fen);
-        // Request the best move
-        String toSend = "go movetime 10";
-        sendCommand(toSend);
-        String[] moves = readMove();
-        return moves[0].equalsIgnoreCase("(none)");
+    // "cp 35" or "mate 3" from an info line, or "" if it has no score
+    private static String scoreOf(String info) {
+        int at = info.indexOf(" score ");
+        if (at < 0)
+            return "";
+        String[] parts = info.substring(at + 7).split(" ");
+        return parts.length > 1 ? parts[0] + " " + parts[1] : "";
     }
 
-    public String getFEN() {
-        return FEN;
+    /**
+     * Readies a running engine for another game: sets the strength and,
+     * if they changed, the threads and hash, then clears what it learned
+     * from the last game and waits until it is ready.
+     */
+    synchronized void newGame(int difficulty, int threads, int hashMb, String fen) throws IOException {
+        dropPonder();
+        if (pending != null && !pending.isDone())
+            uci.send("stop");
+        pending = null;
+        this.difficulty = difficulty;
+        // Full strength when there is no difficulty
+        setOption("Skill Level", difficulty >= 0 ? difficulty : 20);
+        if (threads != this.threads)
+            setOption("Threads", threads);
+        if (hashMb != this.hashMb)
+            setOption("Hash", hashMb);
+        this.threads = threads;
+        this.hashMb = hashMb;
+        uci.send("ucinewgame");
+        await(uci.isReady());
+        setPosition(fen);
     }
 
-    public void updateFEN() {
-        sendCommand("d");
-        String line;
-        while ((line = getLine()) != null) {
-            if(line.startsWith("Fen: ")) {
-                FEN = line.substring(5);
-                System.out.println(FEN);
-                break;
-            }
-        }
+    void setPool(EnginePool pool) {
+        this.pool = pool;
     }
 
-    public String[] getBestMove(){
-        String toSend = "go movetime 400";
-        sendCommand(toSend);
-        return readMove();
+    boolean isAlive() {
+        return stockfishProcess.isAlive();
     }
 
-    public String[] getBestMove(String fen){
-        // Send the position in FEN format
-        String toSend = fen;
-        setPosition(toSend);
-        // Request the best move
-        toSend = "go movetime 400";
-        sendCommand(toSend);
+    // Ends a search in progress; whoever waits on it gets its bestmove
+    @Override
+    public synchronized void stop() {
+        dropPonder();
+        pending = null;
+        uci.send("stop");
+    }
 
-        // Read the response until we find the best move
-        return readMove();  // Return the best move found
+    // A ponder search nobody will wait for becomes pending, to be stopped
+    // before the next search
+    private void dropPonder() {
+        if (pondering != null)
+            pending = pondering;
+        if (ponderHit != null)
+            pending = ponderHit;
+        pondering = null;
+        ponderHit = null;
+    }
+
+    /**
+     * The real move has arrived. If it is the one pondered on, ponderhit
+     * turns the ponder search into the clock search for it; otherwise the
+     * ponder search is stopped before the next search starts.
+     */
+    @Override
+    public synchronized void sendPosition(String fen) {
+        setPosition(fen);
+        if (pondering != null && position.equals(ponderPosition)) {
+            uci.send("ponderhit");
+            ponderHit = pondering;
+            pondering = null;
+            System.out.println("Ponder hit");
+            return;
+        }
+        if (pondering != null)
+            System.out.println("Ponder miss");
+        dropPonder();
     }
 
-    public String getLegalMoves(){
-        // Send the position in FEN format
-        // Request the perft command with depth 1
-        sendCommand("go perft 1");
+    // Stockfish counts the pondering time against the clock at ponderhit
+    @Override
+    public synchronized void ponder(String predicted, long wtime, long btime, long winc, long binc) {
+        ponderPosition = UciClient.withMove(position, predicted);
+        pondering = search(ponderPosition, "go ponder wtime " + wtime + " btime " + btime + " winc " + winc
+            + " binc " + binc);
+        System.out.println("Pondering on " + predicted);
+    }
 
-        String line;
-        StringBuilder legalMoves = new StringBuilder();
-        // Read Stockfish's response
-        while ((line = getLine()) != null) {
-            //System.out.println("Stockfish: " + line);
-            // Break on a stopping point to avoid infinite loops
-            if (line.startsWith("Nodes searched")) {
-                break;
-            }
-            // Look for the "Legal moves:" line
-            if (line.endsWith(": 1")) {
-                line = line.substring(0,4);
-                legalMoves.append(line).append(","); // Extract moves
-                //System.out.println(legalMoves);
-            }
+    @Override
+    public synchronized String[] getBestMove() throws IOException {
+        return await(search(MOVETIME));
+    }
 
+    /**
+     * Starts the fixed-time search and returns without waiting. It is
+     * stopped if the position changes before it finishes.
+     */
+    @Override
+    public synchronized CompletableFuture<String[]> getBestMoveAsync() {
+        pending = search(MOVETIME);
+        return pending;
+    }
 
+    // Stockfish does its own time management from the clocks
+    @Override
+    public synchronized String[] getBestMove(long wtime, long btime, long winc, long binc) throws IOException {
+        if (ponderHit != null) {
+            CompletableFuture<String[]> reply = ponderHit;
+            ponderHit = null;
+            return await(reply);
         }
-        sendCommand("stop");
-        return legalMoves.toString();
+        return await(search("go wtime " + wtime + " btime " + btime + " winc " + winc + " binc " + binc));
     }
-    public boolean parseLegalMoves(String move, String legalMoves){
-        String[] MoveArray = legalMoves.split(",");
-        return Arrays.asList(MoveArray).contains(move);
+
+    @Override
+    public synchronized String[] getBestMove(String fen) throws IOException {
+        setPosition(fen);
+        return await(search(MOVETIME));
     }
 
-    public void printBoard() {
-        sendCommand("d");
-        String line;
-        while ((line = getLine()) != null) {
-            System.out.println(line);
-        }
+    @Override
+    public synchronized void printBoard() {
+        uci.send(position);
+        uci.display().thenAccept(lines -> lines.forEach(System.out::println));
+    }
+
+    // Back to the pool for the next game, or closed if it wasn't leased
+    @Override
+    public void release() throws IOException {
+        if (pool != null)
+            pool.release(this);
+        else
+            close();
     }
 
+    @Override
     public void close() throws IOException {
         try {
-            if (input != null) {
-                input.close();
-            }
-            if (output != null) {
-                output.close();
-            }
-            if (stockfishProcess != null) {
-                stockfishProcess.destroy();  // Terminate the Stockfish process
-            }
+            uci.send("quit");
+            uci.close();
+        } finally {
+            stockfishProcess.destroy();  // Terminate the Stockfish process
             System.out.println("Stockfish closed");
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 }
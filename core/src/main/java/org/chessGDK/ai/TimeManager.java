@@ -0,0 +1,104 @@
+package org.chessGDK.ai;
+
+/**
+ * Decides how long a search may run. With a clock it budgets an optimum
+ * time from the remaining time, increment and move number, and a hard
+ * maximum. After each iteration the search reports how settled the best
+ * move is: a move that keeps coming back stops the search early, while a
+ * changing move or a dropping score (a fail low) earns more time, up to
+ * the maximum.
+ *
+ * A pondering search runs with no limit until ponderHit, and the time
+ * already spent then counts against the budget, as it does in Stockfish.
+ */
+public class TimeManager {
+    // Kept back for moving the piece and the engine round trip
+    private static final long OVERHEAD = 30;
+    private static final long MIN_TIME = 10;
+    // A score this far below the last iteration counts as a fail low
+    private static final int FAIL_LOW_MARGIN = 30;
+
+    private long start;
+    private long optimum;
+    private long maximum;
+    private boolean fixed;
+    private volatile boolean pondering;
+
+    // Searches exactly movetime, like "go movetime"
+    public void startFixed(long movetime) {
+        start = System.currentTimeMillis();
+        pondering = false;
+        optimum = movetime;
+        maximum = movetime;
+        fixed = true;
+    }
+
+    /**
+     * Budgets a move from the mover's remaining time and increment. Early
+     * moves assume more moves are left to play.
+     */
+    public void start(long time, long increment, int fullmoveNumber) {
+        start = System.currentTimeMillis();
+        fixed = false;
+        pondering = false;
+        long available = Math.max(MIN_TIME, time - OVERHEAD);
+        long movesLeft = Math.max(15, 40 - fullmoveNumber / 2);
+        optimum = Math.min(available, available / movesLeft + increment * 3 / 4);
+        maximum = Math.min(available, Math.max(optimum, Math.min(optimum * 5, available / 4 + increment)));
+        optimum = Math.max(MIN_TIME, optimum);
+    }
+
+    // Budgets as start does, but searches on until ponderHit
+    public void startPonder(long time, long increment, int fullmoveNumber) {
+        start(time, increment, fullmoveNumber);
+        pondering = true;
+    }
+
+    // The predicted move was played; the budget applies from now on. Past
+    // the optimum already, the search stops at its next check
+    public void ponderHit() {
+        if (elapsed() >= optimum)
+            maximum = 0;
+        pondering = false;
+    }
+
+    public long elapsed() {
+        return System.currentTimeMillis() - start;
+    }
+
+    // Checked inside the search; past this the current iteration is abandoned
+    public boolean hardStop() {
+        return !pondering && elapsed() >= maximum;
+    }
+
+    /**
+     * Called by the main search thread after each finished iteration.
+     * stableIterations counts how many iterations in a row kept the same
+     * best move.
+     */
+    public boolean stopAfterIteration(int stableIterations, int score, int previousScore) {
+        if (fixed || pondering)
+            return false;
+        double factor;
+        if (stableIterations >= 3)
+            factor = 0.5;
+        else if (stableIterations >= 1)
+            factor = 0.8;
+        else
+            factor = 1.3;
+        if (score < previousScore - FAIL_LOW_MARGIN)
+            factor *= 1.6;
+        long target = Math.min(maximum, (long) (optimum * factor));
+        // The next iteration usually takes longer than all the earlier ones
+        // together, so don't start one that will not finish in time
+        return elapsed() >= target * 6 / 10;
+    }
+
+    public long optimum() {
+        return optimum;
+    }
+
+    public long maximum() {
+        return maximum;
+    }
+}
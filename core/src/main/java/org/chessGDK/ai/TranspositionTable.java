@@ -0,0 +1,139 @@
+package org.chessGDK.ai;
+
+import org.chessGDK.logic.Move;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Search results keyed by Zobrist key, kept in a direct buffer off the Java
+ * heap so a large table costs the garbage collector nothing.
+ *
+ * Each entry is 16 bytes: the key XORed with the data, then the data. The
+ * data packs the move, score, depth, bound and the age of the search that
+ * wrote it. Threads read and write without locks; an entry torn by two
+ * writers fails the XOR check and reads as a miss. Four entries make a
+ * 64-byte bucket, and a store replaces the shallowest, oldest entry in its
+ * bucket.
+ */
+public class TranspositionTable {
+    public static final int BOUND_EXACT = 1;
+    public static final int BOUND_LOWER = 2;
+    public static final int BOUND_UPPER = 3;
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int BUCKET_ENTRIES = 4;
+    private static final int BUCKET_BYTES = ENTRY_BYTES * BUCKET_ENTRIES;
+    private static final int MAX_MB = 1024;
+
+    // Data layout: move 0-17, score 18-33, depth 34-41, bound 42-43, age 44-49
+    private static final int SCORE_SHIFT = 18;
+    private static final int DEPTH_SHIFT = 34;
+    private static final int BOUND_SHIFT = 42;
+    private static final int AGE_SHIFT = 44;
+    private static final int AGE_MASK = 0x3F;
+
+    private final ByteBuffer table;
+    private final int bucketMask;
+    private int age;
+
+    public TranspositionTable(int megabytes) {
+        long bytes = (long) Math.max(1, Math.min(megabytes, MAX_MB)) << 20;
+        int buckets = Integer.highestOneBit((int) (bytes / BUCKET_BYTES));
+        table = ByteBuffer.allocateDirect(buckets * BUCKET_BYTES).order(ByteOrder.nativeOrder());
+        bucketMask = buckets - 1;
+    }
+
+    public int sizeMb() {
+        return table.capacity() >> 20;
+    }
+
+    // Call at the start of each search so older entries are replaced first
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    public void clear() {
+        for (int i = 0; i < table.capacity(); i += 8)
+            table.putLong(i, 0L);
+        age = 0;
+    }
+
+    /**
+     * The data stored for key, or 0 if there is none. Unpack it with
+     * move(), score(), depth() and bound().
+     */
+    public long probe(long key) {
+        int bucket = bucketOffset(key);
+        for (int i = 0; i < BUCKET_ENTRIES; i++) {
+            int offset = bucket + i * ENTRY_BYTES;
+            long data = table.getLong(offset + 8);
+            if (data != 0 && (table.getLong(offset) ^ data) == key)
+                return data;
+        }
+        return 0L;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        int bucket = bucketOffset(key);
+        int target = bucket;
+        int worst = Integer.MAX_VALUE;
+        for (int i = 0; i < BUCKET_ENTRIES; i++) {
+            int offset = bucket + i * ENTRY_BYTES;
+            long data = table.getLong(offset + 8);
+            if (data == 0 || (table.getLong(offset) ^ data) == key) {
+                // Keep the old best move if this search did not find one
+                if (data != 0 && move == Move.NONE)
+                    move = move(data);
+                target = offset;
+                break;
+            }
+            // Older searches count as eight plies shallower
+            int relativeAge = (age - (int) ((data >>> AGE_SHIFT) & AGE_MASK)) & AGE_MASK;
+            int value = depth(data) - 8 * relativeAge;
+            if (value < worst) {
+                worst = value;
+                target = offset;
+            }
+        }
+        long data = (move & 0x3FFFFL)
+            | ((score & 0xFFFFL) << SCORE_SHIFT)
+            | ((long) (depth & 0xFF) << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) age << AGE_SHIFT);
+        table.putLong(target, key ^ data);
+        table.putLong(target + 8, data);
+    }
+
+    private int bucketOffset(long key) {
+        return ((int) (key >>> 32) & bucketMask) * BUCKET_BYTES;
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0x3FFFF);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> DEPTH_SHIFT) & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> BOUND_SHIFT) & 0x3);
+    }
+
+    // Entries written by the current search in the first thousand, per mille
+    public int hashfull() {
+        int used = 0;
+        int entries = Math.min(1000, table.capacity() / ENTRY_BYTES);
+        for (int i = 0; i < entries; i++) {
+            long data = table.getLong(i * ENTRY_BYTES + 8);
+            if (data != 0 && ((data >>> AGE_SHIFT) & AGE_MASK) == age)
+                used++;
+        }
+        return used * 1000 / entries;
+    }
+}
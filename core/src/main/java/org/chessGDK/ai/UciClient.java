@@ -0,0 +1,216 @@
+package org.chessGDK.ai;
+
+import org.chessGDK.logic.Move;
+import org.chessGDK.logic.MoveGenerator;
+import org.chessGDK.logic.Position;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Talks UCI to an engine process without blocking the caller. Each request
+ * that expects a reply returns a future, and one reader thread hands every
+ * line the engine prints to the oldest request waiting for that kind of
+ * reply: bestmove, readyok, uciok, the perft node count or the board from
+ * "d". Info lines go to the info listener as they arrive.
+ */
+public class UciClient implements Closeable {
+    private final BufferedWriter output;
+    private final BufferedReader input;
+
+    private final Queue<CompletableFuture<String[]>> bestMoves = new ConcurrentLinkedQueue<>();
+    private final Queue<CompletableFuture<Void>> readies = new ConcurrentLinkedQueue<>();
+    private final Queue<CompletableFuture<Void>> uciOks = new ConcurrentLinkedQueue<>();
+    private final Queue<CompletableFuture<Long>> perfts = new ConcurrentLinkedQueue<>();
+    private final Queue<CompletableFuture<List<String>>> boards = new ConcurrentLinkedQueue<>();
+    // Lines of the board being printed for the oldest "d"
+    private final List<String> boardLines = new ArrayList<>();
+    private volatile Consumer<String> infoListener = line -> {};
+    // Cleared when the engine's output ends; later requests fail at once
+    private boolean open = true;
+
+    public UciClient(InputStream in, OutputStream out, String name) {
+        output = new BufferedWriter(new OutputStreamWriter(out));
+        input = new BufferedReader(new InputStreamReader(in));
+        Thread reader = new Thread(this::readLoop, name + "-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public void setInfoListener(Consumer<String> listener) {
+        infoListener = listener;
+    }
+
+    /**
+     * Writes the commands, one per line, with a single flush. Nothing is
+     * waited for.
+     */
+    public synchronized void send(String... commands) {
+        try {
+            for (String command : commands) {
+                output.write(command);
+                output.write('\n');
+            }
+            output.flush();
+        } catch (IOException e) {
+            System.out.println("Error writing to engine: " + e.getMessage());
+        }
+    }
+
+    public synchronized CompletableFuture<Void> uci() {
+        return request(uciOks, "uci");
+    }
+
+    public synchronized CompletableFuture<Void> isReady() {
+        return request(readies, "isready");
+    }
+
+    /**
+     * Sends the commands and then the go command, completing with the best
+     * move and the ponder move, which is "" when the engine gives none.
+     */
+    public synchronized CompletableFuture<String[]> go(String... commands) {
+        if (!open)
+            return CompletableFuture.failedFuture(new IOException("Engine output closed"));
+        CompletableFuture<String[]> future = new CompletableFuture<>();
+        bestMoves.add(future);
+        send(commands);
+        return future;
+    }
+
+    public synchronized CompletableFuture<Long> perft(int depth) {
+        return request(perfts, "go perft " + depth);
+    }
+
+    public synchronized CompletableFuture<List<String>> display() {
+        return request(boards, "d");
+    }
+
+    /**
+     * Sets pos from a FEN, or from a UCI position command with any moves
+     * played since. Stops at the first move that isn't legal.
+     */
+    public static void setPosition(Position pos, String command) {
+        int moves = command.indexOf(" moves ");
+        String setup = moves < 0 ? command : command.substring(0, moves);
+        if (setup.contains("startpos"))
+            pos.setFromFen(Position.START_FEN);
+        else
+            pos.setFromFen(setup.replace("position fen ", ""));
+        if (moves < 0)
+            return;
+        int[] legal = new int[MoveGenerator.MAX_MOVES];
+        for (String uci : command.substring(moves + 7).trim().split("\\s+")) {
+            int move = Move.find(legal, MoveGenerator.generateLegal(pos, legal), uci);
+            if (move == Move.NONE) {
+                System.out.println("Illegal move in position: " + uci);
+                return;
+            }
+            pos.makeMove(move);
+        }
+    }
+
+    /**
+     * The position command for a FEN, "startpos", or a position command,
+     * which comes back unchanged.
+     */
+    public static String positionCommand(String fen) {
+        if (fen.startsWith("position "))
+            return fen;
+        return fen.startsWith("startpos") ? "position " + fen : "position fen " + fen;
+    }
+
+    // A position command with one more move played
+    public static String withMove(String command, String move) {
+        return command + (command.contains(" moves ") ? " " : " moves ") + move;
+    }
+
+    // The future is queued before the command is written, so the reply
+    // can't arrive first
+    private <T> CompletableFuture<T> request(Queue<CompletableFuture<T>> queue, String command) {
+        if (!open)
+            return CompletableFuture.failedFuture(new IOException("Engine output closed"));
+        CompletableFuture<T> future = new CompletableFuture<>();
+        queue.add(future);
+        send(command);
+        return future;
+    }
+
+    private void readLoop() {
+        try {
+            String line;
+            while ((line = input.readLine()) != null)
+                dispatch(line);
+        } catch (IOException e) {
+            System.out.println("Error reading from engine: " + e.getMessage());
+        }
+        try {
+            input.close();
+        } catch (IOException ignored) {
+        }
+        // The engine is gone; nothing still waiting will be answered
+        synchronized (this) {
+            open = false;
+            IOException closed = new IOException("Engine output closed");
+            failAll(bestMoves, closed);
+            failAll(readies, closed);
+            failAll(uciOks, closed);
+            failAll(perfts, closed);
+            failAll(boards, closed);
+        }
+    }
+
+    private void dispatch(String line) {
+        if (line.startsWith("info")) {
+            infoListener.accept(line);
+        } else if (line.startsWith("bestmove")) {
+            String[] parts = line.split(" ");
+            String[] moves = {parts.length > 1 ? parts[1] : "(none)", parts.length > 3 ? parts[3] : ""};
+            complete(bestMoves, moves);
+        } else if (line.equals("readyok")) {
+            complete(readies, null);
+        } else if (line.equals("uciok")) {
+            complete(uciOks, null);
+        } else if (line.startsWith("Nodes searched:")) {
+            complete(perfts, Long.parseLong(line.substring("Nodes searched:".length()).trim()));
+        } else if (!boards.isEmpty()) {
+            // "d" ends with the checkers line
+            boardLines.add(line);
+            if (line.startsWith("Checkers:")) {
+                complete(boards, new ArrayList<>(boardLines));
+                boardLines.clear();
+            }
+        }
+    }
+
+    private static <T> void complete(Queue<CompletableFuture<T>> queue, T value) {
+        CompletableFuture<T> future = queue.poll();
+        if (future != null)
+            future.complete(value);
+    }
+
+    private static <T> void failAll(Queue<CompletableFuture<T>> queue, Throwable cause) {
+        CompletableFuture<T> future;
+        while ((future = queue.poll()) != null)
+            future.completeExceptionally(cause);
+    }
+
+    // Closing the engine's input makes it quit; the reader then sees the
+    // end of its output and stops
+    @Override
+    public synchronized void close() throws IOException {
+        output.close();
+    }
+}
@@ -0,0 +1,197 @@
+package org.chessGDK.logic;
+
+/**
+ * Precomputed attack sets. Leaper attacks are table lookups. Sliding attacks
+ * use magic bitboards: the relevant blockers are multiplied by a per-square
+ * magic and shifted into an index, so a lookup costs the same whatever the
+ * occupancy. The tables are built once when the class loads and are shared
+ * by every game. The magics were found with a seeded random search and are
+ * checked for destructive collisions as the tables are filled.
+ */
+public final class Attacks {
+    public static final long[] KNIGHT = new long[64];
+    public static final long[] KING = new long[64];
+    // PAWN[color][sq] is the set of squares a pawn of that color attacks
+    public static final long[][] PAWN = new long[2][64];
+
+    // Squares strictly between two aligned squares, and the full line through them
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    // Rays in the order N, E, NE, NW (increasing squares) then S, W, SW, SE
+    private static final int[] RAY_COL = {0, 1, 1, -1, 0, -1, -1, 1};
+    private static final int[] RAY_ROW = {1, 0, 1, 1, -1, 0, -1, -1};
+    private static final long[][] RAYS = new long[8][64];
+
+    private static final long[] ROOK_MASK = new long[64];
+    private static final int[] ROOK_SHIFT = new int[64];
+    private static final int[] ROOK_OFFSET = new int[64];
+    private static final long[] BISHOP_MASK = new long[64];
+    private static final int[] BISHOP_SHIFT = new int[64];
+    private static final int[] BISHOP_OFFSET = new int[64];
+    // Attack sets for every square, indexed from the square's offset
+    private static final long[] ROOK_TABLE = new long[0x19000];
+    private static final long[] BISHOP_TABLE = new long[0x1480];
+
+    private static final long[] ROOK_MAGIC = {
+        0x9080002288D0C000L, 0x00C0002000409000L, 0x4480200082100008L, 0x0880080110000480L,
+        0x0980080002040080L, 0x0980030C00800200L, 0x8A80008006004900L, 0x0A00011820408204L,
+        0x0020800080400020L, 0x468A401002200040L, 0x3091002000410018L, 0x8190801003800800L,
+        0x20C0808008000400L, 0x0810800400800200L, 0x2210808012002100L, 0x0002002200408114L,
+        0x0000208000400088L, 0x0148808040082004L, 0x0020030012410120L, 0x0030008080080010L,
+        0x0000808008000400L, 0x0800808004000200L, 0x00C0040041080210L, 0x1041520001308044L,
+        0x0004400880088021L, 0x0030004040102000L, 0xB000100480200282L, 0x0081002100100008L,
+        0x0008080080040080L, 0x0006000200081104L, 0x2089000100040200L, 0x8000094200210284L,
+        0x8258244000800088L, 0x0020008020804000L, 0x0000812002801000L, 0x0408100181800800L,
+        0x0044000800800480L, 0x0004800201800C00L, 0x20090821C4000210L, 0x1080010082000064L,
+        0x2901800040018020L, 0x4000500020004000L, 0x0000200900410010L, 0x0008000810008080L,
+        0x000062008A2A0010L, 0x2048040002008080L, 0x0000062710440088L, 0x0004009400420001L,
+        0x0882488000250100L, 0x1010200080401080L, 0x0000160042208600L, 0x204200C020891200L,
+        0x049C402081001002L, 0x7012800200040080L, 0x8000820810014400L, 0xA000010054840E00L,
+        0x0000410014802202L, 0x0029008440042011L, 0x0058081020010041L, 0x1405001000042109L,
+        0x0001000210480005L, 0x0002008810440102L, 0x1084008130020804L, 0x2101108940210406L
+    };
+
+    private static final long[] BISHOP_MAGIC = {
+        0x4128060408342100L, 0x001090011100300AL, 0x01100C0084300201L, 0x0204040880800000L,
+        0x0204504002000004L, 0x2082412020808000L, 0x01020084044260A0L, 0x680A018168082400L,
+        0x8000081010024044L, 0x6008100108010048L, 0x34000810810A0000L, 0x9802080845000005L,
+        0x0400062110100000L, 0x3220020882080010L, 0xA000084812101010L, 0x220000C248145000L,
+        0x1220000843504200L, 0x08A40008104C2040L, 0x0010048904428900L, 0x0211001024008050L,
+        0x0000800C04A00100L, 0x0125A04500A01001L, 0x4086400088480804L, 0x00520C4482109200L,
+        0x0402418410044808L, 0x0088600408112130L, 0x00040A0044002408L, 0x004004400C010220L,
+        0x0001010020104001L, 0x0010110248808084L, 0x000C01101080B000L, 0xC0851144002C0408L,
+        0x0004042040042000L, 0x8804042008040110L, 0x00A4004400880038L, 0x0021010800210040L,
+        0x2000420020920080L, 0x0021210200010048L, 0x0014028428020500L, 0x50A8220043002914L,
+        0x0221011040211001L, 0x000A013002010808L, 0x805934D188009000L, 0x02180A2091008800L,
+        0x0451403411000810L, 0x4044111012081100L, 0x0142100141008202L, 0x0408581080200090L,
+        0x0000841008040000L, 0x004602650C300209L, 0x3000002484100C20L, 0x0028404841108080L,
+        0xC041001082020400L, 0x0808202002189000L, 0x0204210404008800L, 0x8A90020820419400L,
+        0x000304004C040461L, 0x0208208048080404L, 0x0880401704210400L, 0x4000000800841104L,
+        0x0080000808A08840L, 0x0042200820041424L, 0x444040A208420080L, 0x1004441802040011L
+    };
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            int col = sq & 7;
+            int row = sq >>> 3;
+            KNIGHT[sq] = leaper(col, row, new int[][]{{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}});
+            KING[sq] = leaper(col, row, new int[][]{{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}});
+            PAWN[Position.WHITE][sq] = leaper(col, row, new int[][]{{-1, 1}, {1, 1}});
+            PAWN[Position.BLACK][sq] = leaper(col, row, new int[][]{{-1, -1}, {1, -1}});
+            for (int dir = 0; dir < 8; dir++) {
+                long ray = 0L;
+                int c = col + RAY_COL[dir];
+                int r = row + RAY_ROW[dir];
+                while (c >= 0 && c < 8 && r >= 0 && r < 8) {
+                    ray |= 1L << (r * 8 + c);
+                    c += RAY_COL[dir];
+                    r += RAY_ROW[dir];
+                }
+                RAYS[dir][sq] = ray;
+            }
+        }
+        for (int a = 0; a < 64; a++) {
+            for (int dir = 0; dir < 8; dir++) {
+                long ray = RAYS[dir][a];
+                long opposite = RAYS[(dir + 4) & 7][a];
+                for (long b = ray; b != 0; b &= b - 1) {
+                    int sq = Long.numberOfTrailingZeros(b);
+                    BETWEEN[a][sq] = ray & ~RAYS[dir][sq] & ~(1L << sq);
+                    LINE[a][sq] = ray | opposite | (1L << a);
+                }
+            }
+        }
+        initMagics(true, ROOK_MASK, ROOK_MAGIC, ROOK_SHIFT, ROOK_OFFSET, ROOK_TABLE);
+        initMagics(false, BISHOP_MASK, BISHOP_MAGIC, BISHOP_SHIFT, BISHOP_OFFSET, BISHOP_TABLE);
+    }
+
+    private static void initMagics(boolean rook, long[] masks, long[] magics, int[] shifts,
+                                   int[] offsets, long[] table) {
+        int offset = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            // Edge squares never change the attack set unless the slider stands on them
+            long edges = ((0x0101010101010101L | 0x8080808080808080L) & ~fileOf(sq))
+                | ((0xFFL | 0xFFL << 56) & ~rankOf(sq));
+            long mask = (rook ? slidingRook(sq, 0L) : slidingBishop(sq, 0L)) & ~edges;
+            int bits = Long.bitCount(mask);
+            masks[sq] = mask;
+            shifts[sq] = 64 - bits;
+            offsets[sq] = offset;
+
+            // Carry-rippler enumeration of every blocker subset of the mask
+            long subset = 0L;
+            do {
+                long attacks = rook ? slidingRook(sq, subset) : slidingBishop(sq, subset);
+                int index = offset + (int) ((subset * magics[sq]) >>> shifts[sq]);
+                if (table[index] != 0L && table[index] != attacks)
+                    throw new IllegalStateException("Bad magic for square " + sq);
+                table[index] = attacks;
+                subset = (subset - mask) & mask;
+            } while (subset != 0L);
+            offset += 1 << bits;
+        }
+    }
+
+    private static long fileOf(int sq) {
+        return 0x0101010101010101L << (sq & 7);
+    }
+
+    private static long rankOf(int sq) {
+        return 0xFFL << (sq & ~7);
+    }
+
+    private Attacks() {}
+
+    private static long leaper(int col, int row, int[][] offsets) {
+        long attacks = 0L;
+        for (int[] offset : offsets) {
+            int c = col + offset[0];
+            int r = row + offset[1];
+            if (c >= 0 && c < 8 && r >= 0 && r < 8)
+                attacks |= 1L << (r * 8 + c);
+        }
+        return attacks;
+    }
+
+    private static long ray(int dir, int sq, long occupied) {
+        long attacks = RAYS[dir][sq];
+        long blockers = attacks & occupied;
+        if (blockers != 0) {
+            int blocker = dir < 4
+                ? Long.numberOfTrailingZeros(blockers)
+                : 63 - Long.numberOfLeadingZeros(blockers);
+            attacks ^= RAYS[dir][blocker];
+        }
+        return attacks;
+    }
+
+    // Ray walks, only used to fill the magic tables
+    private static long slidingRook(int sq, long occupied) {
+        return ray(0, sq, occupied) | ray(1, sq, occupied) | ray(4, sq, occupied) | ray(5, sq, occupied);
+    }
+
+    private static long slidingBishop(int sq, long occupied) {
+        return ray(2, sq, occupied) | ray(3, sq, occupied) | ray(6, sq, occupied) | ray(7, sq, occupied);
+    }
+
+    public static long rook(int sq, long occupied) {
+        return ROOK_TABLE[ROOK_OFFSET[sq] + (int) (((occupied & ROOK_MASK[sq]) * ROOK_MAGIC[sq]) >>> ROOK_SHIFT[sq])];
+    }
+
+    public static long bishop(int sq, long occupied) {
+        return BISHOP_TABLE[BISHOP_OFFSET[sq] + (int) (((occupied & BISHOP_MASK[sq]) * BISHOP_MAGIC[sq]) >>> BISHOP_SHIFT[sq])];
+    }
+
+    public static long queen(int sq, long occupied) {
+        return rook(sq, occupied) | bishop(sq, occupied);
+    }
+
+    public static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+}
@@ -0,0 +1,203 @@
+package org.chessGDK.logic;
+
+import org.chessGDK.utils.AssetPaths;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Win/draw bitbases for endings where one side has only its king: KPK, KRK,
+ * KQK and KBNK. Each position holds one bit, set when the side with the
+ * extra material wins with best play, so a probe is an index computation and
+ * a bit test. The files are made by BitbaseGenerator and read from
+ * assets/bitbase when the first probe comes in.
+ *
+ * Positions are stored with the strong side as white. Without pawns the
+ * board is mirrored and flipped so the white king sits in the a1-d1-d4
+ * triangle; with a pawn it is mirrored so the pawn is on files a-d.
+ */
+public final class Bitbase {
+    public static final int UNKNOWN = -2;
+    public static final int LOSS = -1;
+    public static final int DRAW = 0;
+    public static final int WIN = 1;
+
+    public static final Bitbase KQK = new Bitbase("kqk", Position.QUEEN);
+    public static final Bitbase KRK = new Bitbase("krk", Position.ROOK);
+    public static final Bitbase KPK = new Bitbase("kpk", Position.PAWN);
+    public static final Bitbase KBNK = new Bitbase("kbnk", Position.BISHOP, Position.KNIGHT);
+    // In generation order: KPK promotes into KQK and KRK
+    static final Bitbase[] ALL = {KQK, KRK, KPK, KBNK};
+
+    // Squares of the a1-d1-d4 triangle, and each square's slot in it
+    static final int[] TRIANGLE = new int[10];
+    private static final int[] KING_SLOT = new int[64];
+
+    static {
+        int slot = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            int col = sq & 7;
+            int row = sq >>> 3;
+            KING_SLOT[sq] = col <= 3 && row <= col ? slot : -1;
+            if (KING_SLOT[sq] >= 0)
+                TRIANGLE[slot++] = sq;
+        }
+    }
+
+    private static volatile boolean loaded;
+
+    final String name;
+    // Types of the strong side's pieces besides its king, in index order
+    final int[] types;
+    final boolean pawn;
+    // Positions per side to move; white to move comes first
+    final int half;
+    private long[] bits;
+
+    private Bitbase(String name, int... types) {
+        this.name = name;
+        this.types = types;
+        this.pawn = types[0] == Position.PAWN;
+        int size = (pawn ? 24 * 64 : 10) * 64;
+        for (int i = pawn ? 1 : 0; i < types.length; i++)
+            size *= 64;
+        this.half = size;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The result with best play for the side to move, or UNKNOWN when the
+     * material is not covered or the bitbase files are missing. The
+     * fifty-move rule is not taken into account.
+     */
+    public static int probe(Position pos) {
+        long occupied = pos.occupied();
+        int count = Long.bitCount(occupied);
+        if (count < 3 || count > 4)
+            return UNKNOWN;
+        int strong;
+        if (Long.bitCount(pos.pieces(Position.BLACK)) == 1)
+            strong = Position.WHITE;
+        else if (Long.bitCount(pos.pieces(Position.WHITE)) == 1)
+            strong = Position.BLACK;
+        else
+            return UNKNOWN;
+        Bitbase bitbase = find(pos, strong, count);
+        if (bitbase == null)
+            return UNKNOWN;
+        if (!loaded)
+            loadDefault();
+        if (bitbase.bits == null)
+            return UNKNOWN;
+
+        // Flip the board so the strong side plays white
+        int flip = strong == Position.WHITE ? 0 : 56;
+        int first = Long.numberOfTrailingZeros(pos.pieces(strong, bitbase.types[0])) ^ flip;
+        int second = bitbase.types.length > 1
+            ? Long.numberOfTrailingZeros(pos.pieces(strong, bitbase.types[1])) ^ flip : 0;
+        int stm = pos.sideToMove() == strong ? 0 : 1;
+        int index = bitbase.index(stm, pos.kingSquare(strong) ^ flip, pos.kingSquare(strong ^ 1) ^ flip, first, second);
+        if (!bitbase.isWin(index))
+            return DRAW;
+        return stm == 0 ? WIN : LOSS;
+    }
+
+    private static Bitbase find(Position pos, int strong, int count) {
+        if (count == 4)
+            return Long.bitCount(pos.pieces(strong, Position.BISHOP)) == 1
+                && Long.bitCount(pos.pieces(strong, Position.KNIGHT)) == 1 ? KBNK : null;
+        for (Bitbase bitbase : ALL) {
+            if (bitbase.types.length == 1 && pos.pieces(strong, bitbase.types[0]) != 0)
+                return bitbase;
+        }
+        return null;
+    }
+
+    boolean isWin(int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Index of a position with the strong side as white. stm is 0 with
+     * white to move; first and second are the squares of the pieces in
+     * types, and second is ignored when there is only one.
+     */
+    int index(int stm, int whiteKing, int blackKing, int first, int second) {
+        int index;
+        if (pawn) {
+            int t = (first & 7) > 3 ? 1 : 0;
+            int p = transform(first, t);
+            index = (((p >>> 3) - 1) * 4 + (p & 7)) * 64 + transform(whiteKing, t);
+            index = index * 64 + transform(blackKing, t);
+        } else {
+            int t = kingTransform(whiteKing);
+            index = KING_SLOT[transform(whiteKing, t)] * 64 + transform(blackKing, t);
+            index = index * 64 + transform(first, t);
+            if (types.length > 1)
+                index = index * 64 + transform(second, t);
+        }
+        return stm * half + index;
+    }
+
+    // Symmetry that brings a square into the a1-d1-d4 triangle:
+    // bit 0 mirrors the files, bit 1 flips the ranks, bit 2 transposes
+    private static int kingTransform(int sq) {
+        int t = 0;
+        if ((sq & 7) > 3)
+            t |= 1;
+        if ((sq >>> 3) > 3)
+            t |= 2;
+        int moved = transform(sq, t);
+        if ((moved >>> 3) > (moved & 7))
+            t |= 4;
+        return t;
+    }
+
+    static int transform(int sq, int t) {
+        if ((t & 1) != 0)
+            sq ^= 7;
+        if ((t & 2) != 0)
+            sq ^= 56;
+        if ((t & 4) != 0)
+            sq = ((sq & 7) << 3) | (sq >>> 3);
+        return sq;
+    }
+
+    void setBits(long[] bits) {
+        this.bits = bits;
+    }
+
+    // Reads every bitbase found in assets/bitbase; missing ones stay UNKNOWN
+    private static synchronized void loadDefault() {
+        if (loaded)
+            return;
+        Path dir = Path.of(AssetPaths.root(), "bitbase");
+        for (Bitbase bitbase : ALL) {
+            Path file = dir.resolve(bitbase.name + ".bin");
+            try {
+                bitbase.load(file);
+            } catch (IOException e) {
+                System.out.println("No " + bitbase.name.toUpperCase() + " bitbase at " + file);
+            }
+        }
+        loaded = true;
+    }
+
+    // Files are gzipped big-endian longs, one bit per position
+    void load(Path file) throws IOException {
+        long[] words = new long[(2 * half + 63) / 64];
+        try (InputStream in = Files.newInputStream(file);
+             DataInputStream data = new DataInputStream(new GZIPInputStream(in))) {
+            for (int i = 0; i < words.length; i++)
+                words[i] = data.readLong();
+        }
+        bits = words;
+    }
+}
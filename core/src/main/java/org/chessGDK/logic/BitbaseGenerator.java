@@ -0,0 +1,280 @@
+package org.chessGDK.logic;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds the Bitbase files by retrograde analysis. Every index is first
+ * marked legal or not; then two passes repeat until nothing changes. With
+ * white to move a position is won if some move reaches a won position with
+ * black to move. With black to move it is won if black is mated, or if every
+ * black move reaches a won position and none captures. Whatever is left
+ * over is a draw.
+ *
+ * Each pass only writes positions for one side to move and only reads the
+ * other side's, so the indices are split into chunks and run in parallel
+ * with no locking. Run it with "gradlew core:buildBitbases".
+ */
+public class BitbaseGenerator {
+    private static final byte UNKNOWN = 0;
+    private static final byte WON = 1;
+    private static final byte ILLEGAL = 2;
+    private static final int CHUNK = 4096;
+
+    private final Bitbase bitbase;
+    private final byte[] state;
+
+    BitbaseGenerator(Bitbase bitbase) {
+        this.bitbase = bitbase;
+        this.state = new byte[2 * bitbase.half];
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Path.of(args.length > 0 ? args[0] : "assets/bitbase");
+        Files.createDirectories(dir);
+        for (Bitbase bitbase : Bitbase.ALL) {
+            long start = System.currentTimeMillis();
+            long[] bits = new BitbaseGenerator(bitbase).generate();
+            // KPK looks up its promotions in the tables already built
+            bitbase.setBits(bits);
+            Path file = dir.resolve(bitbase.name + ".bin");
+            write(bits, file);
+            System.out.println(bitbase.name.toUpperCase() + " written to " + file + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    long[] generate() {
+        int half = bitbase.half;
+        int illegal = chunks(0, 2 * half, this::markIllegal);
+        int iteration = 0;
+        int changed;
+        do {
+            iteration++;
+            changed = chunks(0, half, this::whiteWins);
+            changed += chunks(half, 2 * half, this::blackLoses);
+        } while (changed > 0);
+
+        long[] bits = new long[(2 * half + 63) / 64];
+        int[] won = new int[2];
+        for (int i = 0; i < state.length; i++) {
+            if (state[i] == WON) {
+                bits[i >>> 6] |= 1L << i;
+                won[i / half]++;
+            }
+        }
+        System.out.println(bitbase.name.toUpperCase() + ": " + state.length + " positions, " + illegal
+            + " illegal, " + iteration + " iterations, won " + won[0] + " with white to move, "
+            + won[1] + " with black to move");
+        return bits;
+    }
+
+    private interface Pass {
+        // Returns how many positions were newly decided
+        int run(int index, int[] squares);
+    }
+
+    // Runs a pass over [from, to) in parallel chunks
+    private static int chunks(int from, int to, Pass pass) {
+        int count = (to - from + CHUNK - 1) / CHUNK;
+        return IntStream.range(0, count).parallel().map(chunk -> {
+            int[] squares = new int[4];
+            int changed = 0;
+            int end = Math.min(to, from + (chunk + 1) * CHUNK);
+            for (int i = from + chunk * CHUNK; i < end; i++)
+                changed += pass.run(i, squares);
+            return changed;
+        }).sum();
+    }
+
+    /**
+     * Unpacks an index into squares: white king, black king, then the
+     * pieces in the order of types. Returns the side to move.
+     */
+    private int decode(int index, int[] squares) {
+        int stm = index >= bitbase.half ? 1 : 0;
+        index -= stm * bitbase.half;
+        int pieces = bitbase.types.length;
+        if (bitbase.pawn) {
+            squares[1] = index & 63;
+            squares[0] = (index >>> 6) & 63;
+            int slot = index >>> 12;
+            squares[2] = Position.square(slot & 3, slot / 4 + 1);
+        } else {
+            for (int i = pieces - 1; i >= 0; i--) {
+                squares[2 + i] = index & 63;
+                index >>>= 6;
+            }
+            squares[1] = index & 63;
+            squares[0] = Bitbase.TRIANGLE[index >>> 6];
+        }
+        return stm;
+    }
+
+    private int index(int stm, int[] squares) {
+        return bitbase.index(stm, squares[0], squares[1], squares[2], squares[3]);
+    }
+
+    private int markIllegal(int index, int[] squares) {
+        int stm = decode(index, squares);
+        int pieces = 2 + bitbase.types.length;
+        long occupied = 0L;
+        for (int i = 0; i < pieces; i++) {
+            if ((occupied & (1L << squares[i])) != 0) {
+                state[index] = ILLEGAL;
+                return 1;
+            }
+            occupied |= 1L << squares[i];
+        }
+        // Kings touching, or black in check with white to move
+        if ((Attacks.KING[squares[0]] & (1L << squares[1])) != 0
+            || (stm == 0 && attacked(squares[1], occupied, squares, -1))) {
+            state[index] = ILLEGAL;
+            return 1;
+        }
+        return 0;
+    }
+
+    // Whether a white piece other than the one at skip attacks sq
+    private boolean attacked(int sq, long occupied, int[] squares, int skip) {
+        if ((Attacks.KING[squares[0]] & (1L << sq)) != 0)
+            return true;
+        for (int i = 0; i < bitbase.types.length; i++) {
+            if (2 + i == skip)
+                continue;
+            int from = squares[2 + i];
+            if ((attacks(bitbase.types[i], from, occupied) & (1L << sq)) != 0)
+                return true;
+        }
+        return false;
+    }
+
+    private static long attacks(int type, int sq, long occupied) {
+        switch (type) {
+            case Position.PAWN: return Attacks.PAWN[Position.WHITE][sq];
+            case Position.KNIGHT: return Attacks.KNIGHT[sq];
+            case Position.BISHOP: return Attacks.bishop(sq, occupied);
+            case Position.ROOK: return Attacks.rook(sq, occupied);
+            case Position.QUEEN: return Attacks.queen(sq, occupied);
+            default: return Attacks.KING[sq];
+        }
+    }
+
+    private int whiteWins(int index, int[] squares) {
+        if (state[index] != UNKNOWN)
+            return 0;
+        decode(index, squares);
+        int pieces = 2 + bitbase.types.length;
+        long occupied = 0L;
+        for (int i = 0; i < pieces; i++)
+            occupied |= 1L << squares[i];
+
+        // King moves, staying clear of the black king
+        int king = squares[0];
+        long targets = Attacks.KING[king] & ~occupied & ~Attacks.KING[squares[1]];
+        for (; targets != 0; targets &= targets - 1) {
+            squares[0] = Long.numberOfTrailingZeros(targets);
+            if (state[index(1, squares)] == WON)
+                return won(index);
+        }
+        squares[0] = king;
+
+        for (int i = 0; i < bitbase.types.length; i++) {
+            int from = squares[2 + i];
+            if (bitbase.types[i] == Position.PAWN) {
+                if (pawnWins(from, occupied, squares))
+                    return won(index);
+                squares[2 + i] = from;
+                continue;
+            }
+            targets = attacks(bitbase.types[i], from, occupied) & ~occupied;
+            for (; targets != 0; targets &= targets - 1) {
+                squares[2 + i] = Long.numberOfTrailingZeros(targets);
+                if (state[index(1, squares)] == WON) {
+                    squares[2 + i] = from;
+                    return won(index);
+                }
+            }
+            squares[2 + i] = from;
+        }
+        return 0;
+    }
+
+    // Single and double pushes; a promotion is looked up in KQK and KRK
+    private boolean pawnWins(int from, long occupied, int[] squares) {
+        int to = from + 8;
+        if ((occupied & (1L << to)) != 0)
+            return false;
+        if (to >= 56) {
+            for (Bitbase promoted : new Bitbase[] {Bitbase.KQK, Bitbase.KRK}) {
+                if (promoted.isWin(promoted.index(1, squares[0], squares[1], to, 0)))
+                    return true;
+            }
+            return false;
+        }
+        squares[2] = to;
+        if (state[index(1, squares)] == WON)
+            return true;
+        if (from < 16 && (occupied & (1L << (to + 8))) == 0) {
+            squares[2] = to + 8;
+            return state[index(1, squares)] == WON;
+        }
+        return false;
+    }
+
+    private int blackLoses(int index, int[] squares) {
+        if (state[index] != UNKNOWN)
+            return 0;
+        decode(index, squares);
+        int pieces = 2 + bitbase.types.length;
+        long occupied = 0L;
+        for (int i = 0; i < pieces; i++)
+            occupied |= 1L << squares[i];
+
+        int king = squares[1];
+        long withoutKing = occupied & ~(1L << king);
+        long targets = Attacks.KING[king] & ~Attacks.KING[squares[0]];
+        int legal = 0;
+        for (; targets != 0; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            int captured = -1;
+            for (int i = 2; i < pieces; i++) {
+                if (squares[i] == to)
+                    captured = i;
+            }
+            if (attacked(to, withoutKing & ~(1L << to), squares, captured))
+                continue;
+            // Taking the last piece, or either piece of KBN, is a draw
+            if (captured >= 0)
+                return 0;
+            legal++;
+            squares[1] = to;
+            boolean won = state[index(0, squares)] == WON;
+            squares[1] = king;
+            if (!won)
+                return 0;
+        }
+        // No legal move: mate if in check, stalemate otherwise
+        if (legal == 0 && !attacked(king, occupied, squares, -1))
+            return 0;
+        return won(index);
+    }
+
+    private int won(int index) {
+        state[index] = WON;
+        return 1;
+    }
+
+    private static void write(long[] bits, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file);
+             DataOutputStream data = new DataOutputStream(new GZIPOutputStream(out))) {
+            for (long word : bits)
+                data.writeLong(word);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.chessGDK.logic;
+
+/**
+ * Reads and writes Forsyth-Edwards Notation directly from and into a
+ * Position. The parser walks the characters once without splitting, and
+ * the writer fills a single StringBuilder.
+ */
+public final class Fen {
+    private static final String CASTLING_CHARS = "KQkq";
+    // Where the king and rook must stand for each of K, Q, k and q
+    private static final int[] CASTLING_KING = {4, 4, 60, 60};
+    private static final int[] CASTLING_ROOK = {7, 0, 63, 56};
+
+    private Fen() {}
+
+    public static Position parse(CharSequence fen) {
+        Position pos = Position.unset();
+        parse(fen, pos);
+        return pos;
+    }
+
+    /**
+     * Loads the FEN into the position. Missing trailing fields default to
+     * no castling, no en passant and clocks of 0 and 1. A castling right
+     * whose king or rook is not on its home square is dropped.
+     */
+    public static void parse(CharSequence fen, Position pos) {
+        int len = fen.length();
+        int i = skipSpaces(fen, 0);
+        pos.clear();
+
+        int row = 7;
+        int col = 0;
+        for (; i < len && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                row--;
+                col = 0;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                int piece = Position.pieceFromChar(c);
+                if (piece < 0 || row < 0 || col > 7)
+                    throw new IllegalArgumentException("Invalid FEN placement: " + fen);
+                pos.put(piece, Position.square(col, row));
+                col++;
+            }
+        }
+
+        i = skipSpaces(fen, i);
+        int side = Position.WHITE;
+        if (i < len) {
+            side = fen.charAt(i) == 'b' ? Position.BLACK : Position.WHITE;
+            i = skipSpaces(fen, i + 1);
+        }
+
+        int castling = 0;
+        for (; i < len && fen.charAt(i) != ' '; i++) {
+            int right = CASTLING_CHARS.indexOf(fen.charAt(i));
+            if (right >= 0 && piecesAtHome(pos, right))
+                castling |= 1 << right;
+        }
+
+        i = skipSpaces(fen, i);
+        int ep = Position.NO_SQUARE;
+        if (i < len) {
+            if (fen.charAt(i) != '-' && i + 1 < len)
+                ep = Position.square(fen.charAt(i) - 'a', fen.charAt(i + 1) - '1');
+            while (i < len && fen.charAt(i) != ' ')
+                i++;
+        }
+
+        i = skipSpaces(fen, i);
+        int halfmove = 0;
+        for (; i < len && fen.charAt(i) != ' '; i++)
+            halfmove = halfmove * 10 + (fen.charAt(i) - '0');
+
+        i = skipSpaces(fen, i);
+        int fullmove = 0;
+        for (; i < len && Character.isDigit(fen.charAt(i)); i++)
+            fullmove = fullmove * 10 + (fen.charAt(i) - '0');
+
+        pos.setState(side, castling, ep, halfmove, Math.max(fullmove, 1));
+    }
+
+    private static boolean piecesAtHome(Position pos, int right) {
+        int color = right < 2 ? Position.WHITE : Position.BLACK;
+        return pos.pieceAt(CASTLING_KING[right]) == Position.piece(color, Position.KING)
+            && pos.pieceAt(CASTLING_ROOK[right]) == Position.piece(color, Position.ROOK);
+    }
+
+    private static int skipSpaces(CharSequence fen, int i) {
+        while (i < fen.length() && Character.isWhitespace(fen.charAt(i)))
+            i++;
+        return i;
+    }
+
+    public static String write(Position pos) {
+        StringBuilder sb = new StringBuilder(90);
+        write(pos, sb);
+        return sb.toString();
+    }
+
+    public static void write(Position pos, StringBuilder sb) {
+        for (int row = 7; row >= 0; row--) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                int piece = pos.pieceAt(Position.square(col, row));
+                if (piece == Position.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    sb.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                sb.append(Position.pieceChar(piece));
+            }
+            if (empty > 0)
+                sb.append((char) ('0' + empty));
+            if (row > 0)
+                sb.append('/');
+        }
+
+        sb.append(pos.isWhiteToMove() ? " w " : " b ");
+        int castling = pos.castlingRights();
+        if (castling == 0)
+            sb.append('-');
+        for (int right = 0; right < 4; right++) {
+            if ((castling & (1 << right)) != 0)
+                sb.append(CASTLING_CHARS.charAt(right));
+        }
+
+        int ep = pos.epSquare();
+        if (ep == Position.NO_SQUARE)
+            sb.append(" -");
+        else
+            sb.append(' ').append((char) ('a' + (ep & 7))).append((char) ('1' + (ep >>> 3)));
+        sb.append(' ').append(pos.halfmoveClock()).append(' ').append(pos.fullmoveNumber());
+    }
+}
@@ -0,0 +1,91 @@
+package org.chessGDK.logic;
+
+import java.util.Arrays;
+
+/**
+ * Remaining time for each side with a per-move increment. The clock of the
+ * side to move runs from the last press until the next one.
+ */
+public class GameClock {
+    private static final long DEFAULT_MILLIS = 6_000;
+    private static final long DEFAULT_INCREMENT = 400;
+    private final long[] remaining = new long[2];
+    private final long increment;
+    private int running = Position.WHITE;
+    private long turnStart;
+    // Both sides' times before each press, white then black, for takeBack
+    private long[] history = new long[64];
+    private int presses;
+
+    public GameClock(long initialMillis, long incrementMillis) {
+        remaining[Position.WHITE] = initialMillis;
+        remaining[Position.BLACK] = initialMillis;
+        increment = incrementMillis;
+        turnStart = System.currentTimeMillis();
+    }
+
+    /**
+     * Time control from -Dclock as "minutes+seconds", e.g. "5+3". The clock
+     * isn't shown and only budgets the AI, so by default it gets six seconds
+     * and a 0.4 second increment: replies settle near the increment, the
+     * same pace as a fixed-time search.
+     */
+    public static GameClock fromProperty() {
+        String control = System.getProperty("clock");
+        if (control == null)
+            return new GameClock(DEFAULT_MILLIS, DEFAULT_INCREMENT);
+        try {
+            int plus = control.indexOf('+');
+            double minutes = Double.parseDouble(plus < 0 ? control : control.substring(0, plus));
+            double seconds = plus < 0 ? 0 : Double.parseDouble(control.substring(plus + 1));
+            return new GameClock((long) (minutes * 60_000), (long) (seconds * 1000));
+        } catch (NumberFormatException e) {
+            System.out.println("Bad clock setting " + control + ", using the default");
+            return new GameClock(DEFAULT_MILLIS, DEFAULT_INCREMENT);
+        }
+    }
+
+    // Starts the clock for color from now
+    public synchronized void start(int color) {
+        running = color;
+        turnStart = System.currentTimeMillis();
+    }
+
+    // Ends the running side's turn and starts the other side's clock
+    public synchronized void press() {
+        long now = System.currentTimeMillis();
+        if (2 * presses == history.length)
+            history = Arrays.copyOf(history, history.length * 2);
+        history[2 * presses] = remaining[Position.WHITE];
+        history[2 * presses + 1] = remaining[Position.BLACK];
+        presses++;
+        remaining[running] = Math.max(0, remaining[running] - (now - turnStart)) + increment;
+        running ^= 1;
+        turnStart = now;
+    }
+
+    /**
+     * Undoes the last press: both sides get back the time they had before
+     * it, and the side that pressed is running again from now.
+     */
+    public synchronized void takeBack() {
+        if (presses == 0)
+            return;
+        presses--;
+        remaining[Position.WHITE] = history[2 * presses];
+        remaining[Position.BLACK] = history[2 * presses + 1];
+        running ^= 1;
+        turnStart = System.currentTimeMillis();
+    }
+
+    // Time left for color, counting the turn in progress
+    public synchronized long remaining(int color) {
+        if (color != running)
+            return remaining[color];
+        return Math.max(0, remaining[color] - (System.currentTimeMillis() - turnStart));
+    }
+
+    public long increment() {
+        return increment;
+    }
+}
@@ -4,13 +4,15 @@ package org.chessGDK.logic;
 import com.badlogic.gdx.ScreenAdapter;
 import com.badlogic.gdx.audio.Sound;
 import com.badlogic.gdx.math.Interpolation;
+import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.scenes.scene2d.actions.Actions;
 import com.badlogic.gdx.utils.Timer;
 import com.badlogic.gdx.Gdx;
 
 import org.chessGDK.network.Communication;
 import org.chessGDK.pieces.*;
-import org.chessGDK.ai.StockfishAI;
+import org.chessGDK.ai.ChessEngine;
+import org.chessGDK.ai.OpeningBook;
 
 import org.chessGDK.ui.GameOverScreen;
 import org.chessGDK.ui.ScreenManager;
@@ -20,46 +22,69 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.util.Queue;
-import java.util.Stack;
-import java.util.HashMap;
-import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CountDownLatch;
 
 public class GameManager extends ScreenAdapter {
-    private final BlockingQueue<String> moveQueue = new LinkedBlockingQueue<>();
+    // Queued in place of a move to take back; packed moves are never negative
+    private static final int UNDO = -1;
+    private final MoveQueue moveQueue = new MoveQueue();
     private Thread gameLoopThread;
+    // Budgets the AI's thinking time; not shown on screen
+    private final GameClock clock = GameClock.fromProperty();
 
     private boolean whiteTurn;
     private boolean playerColor;
+    private final Position position;
+    // View of the position for rendering, kept in step with it by movePiece
     private final Piece[][] board;
     private final Blank[][] possibilities;
-    private final StockfishAI stockfishAI;
+    private final ChessEngine engine;
+    // Null when assets/book/book.bin is missing
+    private final OpeningBook book = OpeningBook.openDefault();
     private boolean freeMode = false;
     private boolean puzzleMode = false;
     public volatile boolean gameOver = false;
     public boolean multiplayerMode = false;
-    private final Stack<String> moveList;
-    private Queue<String> solutionList;
+    // Puzzle solution as packed moves without flags
+    private int[] solution;
+    private int solutionIndex;
     private String FEN;
+    // Where the game began, sent to the engine with every move since
+    private final String startFen;
     private final float duration = .15f;
     private final GameOverScreen gameOverScreen;
-    private final HashMap<String, String> castleMoves;
-    private String legalMoves;
+    private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES];
+    // Legal moves for the current ply, read by the input thread
+    private volatile int[] legalMoves;
+    // Destination bitmask per from square, rebuilt once per ply
+    private volatile long[] legalTargets;
     private Communication communication;
     private boolean isHost;
-    private String[] bestMove;
+    private volatile String[] bestMove;
+    // Bumped by each take-back, so an AI move scheduled before it is dropped
+    private volatile int takeBacks;
+    private boolean engineReleased;
     private final Sound moveSound;
     private final Sound killSound;
 
     public GameManager(int difficulty, String fen, String HostOrClient) throws IOException {
 
+        position = new Position();
         board = new Piece[8][8];
         possibilities = new Blank[8][8];
-        legalMoves = "";
+        legalMoves = new int[0];
+        legalTargets = new long[64];
         FEN = fen.split("\t")[0];
+        if (FEN.contains("startpos"))
+            FEN = Position.START_FEN;
+        startFen = FEN;
+        // Blanks keep their texture objects for the whole game
+        for (int i = 0; i < possibilities.length; i++) {
+            for (int j = 0; j < possibilities[i].length; j++) {
+                possibilities[i][j] = new Blank();
+            }
+        }
         if (difficulty == -1) {
             freeMode = true;
         }
@@ -78,14 +103,7 @@ public class GameManager extends ScreenAdapter {
             }
         }
         int DEPTH = 12;
-        stockfishAI = new StockfishAI(DEPTH, difficulty, FEN);
-        FEN = getFenFromAI();
-        castleMoves = new HashMap<>();
-        castleMoves.put("e1c1", "a1d1");
-        castleMoves.put("e1g1", "h1f1");
-        castleMoves.put("e8c8", "a8d8");
-        castleMoves.put("e8g8", "h8f8");
-        moveList = new Stack<>();
+        engine = ChessEngine.create(DEPTH, difficulty, ScreenManager.getInstance().getThreads(), FEN);
         parseFen(FEN);
         printBoard();
         updateBoardState();
@@ -99,9 +117,15 @@ public class GameManager extends ScreenAdapter {
     }
 
     private void setupSolutions(String solutions) {
-        solutionList = new ArrayDeque<>();
-        solutions = solutions.replace("\n", "");
-        solutionList.addAll(Arrays.asList(solutions.split(",")));
+        String[] moves = solutions.replace("\n", "").split(",");
+        solution = new int[moves.length];
+        for (int i = 0; i < moves.length; i++)
+            solution[i] = Move.parse(moves[i]);
+        solutionIndex = 0;
+    }
+
+    private boolean puzzleSolved() {
+        return solutionIndex >= solution.length;
     }
 
     public void startGameLoopThread() {
@@ -111,20 +135,39 @@ public class GameManager extends ScreenAdapter {
         gameLoopThread.start();
     }
 
-    private void gameLoop () {
+    // The engine is only used from this thread, so it is handed back here,
+    // once nothing can still be searching on it
+    private void gameLoop() {
+        try {
+            playGame();
+        } finally {
+            releaseEngine();
+        }
+    }
+
+    private void playGame() {
+        clock.start(position.sideToMove());
         // Handles starting puzzles and loading from save states
         if(whiteTurn != playerColor && !multiplayerMode)
             aiTurn();
         while (!gameOver) {
             try {
                 // If it's the player's turn, wait for a move from the queue
-                checkforcheckmate();
+                checkForGameOver();
                 System.out.println("Waiting for move...");
-                String move = moveQueue.take(); // Blocks until a move is added
+                int move = moveQueue.take(); // Blocks until a move is added
+                if (move == UNDO) {
+                    takeBack();
+                    continue;
+                }
+                // A rejected move leaves the turn where it was, as does one
+                // queued just before a take-back that no longer fits
+                if (!movePiece(move))
+                    continue;
                 if(multiplayerMode && (whiteTurn == playerColor)){
-                    communication.sendMove(move);
+                    communication.sendMove(Move.toUci(move));
                 }
-                movePiece(move);
+                clock.press();
                 updateBoardState();
                 toggleTurn();
 
@@ -138,40 +181,42 @@ public class GameManager extends ScreenAdapter {
     }
 
     private void updateBoardState() {
-        String toStock = appendLastMove(FEN);
-        sendPosToStockfish(toStock);
-        FEN = getFenFromAI();
-        try {
-            bestMove = getBestMove();
-            legalMoves = getLegalMoves();        // Get all legal moves for after last move
-            System.out.println("Legal Moves: " + legalMoves);
-        } catch (IOException e) {
-            System.out.println("update board state failed");
-            gameOver = true;
+        // The position after the move was applied locally in movePiece
+        FEN = Fen.write(position);
+        sendPosToStockfish(positionCommand());
+        updateLegalMoves();                  // Get all legal moves for after last move
+        System.out.println("Legal Moves: " + getLegalMoves());
+        if (aiToMove()) {
+            try {
+                bestMove = getBestMove();
+                System.out.println("Best Move: " + bestMove[0]);
+            } catch (IOException e) {
+                System.out.println("update board state failed");
+                gameOver = true;
+            }
+        } else {
+            ponder();
         }
         if (puzzleMode) {
-            System.out.println("Puzzle Move: " + solutionList.peek());
-            if (solutionList.peek() == null) {
+            if (puzzleSolved()) {
                 System.out.println("Puzzle Completed!");
                 gameOver = true;
                 Timer.schedule(new Timer.Task() {
                     @Override
                     public void run() {
+                        gameOverScreen.setResult("Puzzle Completed!");
                         ScreenManager.getInstance().setScreen(gameOverScreen);
                     }
                 }, 2f); // 2 seconds delay
             }
         }
-        else {
-            System.out.println("Best Move: " + bestMove[0]);
-        }
     }
 
     public void toggleTurn() {
         whiteTurn = !whiteTurn;
         if (freeMode)
             return;
-        if (puzzleMode && solutionList.isEmpty()) {
+        if (puzzleMode && puzzleSolved()) {
             gameOver = true;
         }
         else if (multiplayerMode)
@@ -201,55 +246,117 @@ public class GameManager extends ScreenAdapter {
 
     public void aiTurn() {
         System.out.println("AI's turn");
+        int scheduled = takeBacks;
         Timer.schedule(new Timer.Task() {
             @Override
             public void run() {
-                if (puzzleMode && !solutionList.isEmpty())
-                    queueMove(solutionList.peek());
+                if (scheduled != takeBacks)
+                    return;
+                if (puzzleMode && !puzzleSolved())
+                    queueMove(findLegal(solution[solutionIndex]));
                 else if (!puzzleMode)
                     queueMove(bestMove[0]);
             }
         }, .1f); // Delay by .5 second
     }
 
+    /**
+     * Right after the AI's move, starts the engine on the reply it predicted
+     * while the player's clock runs. When the player's move arrives, the
+     * engine either carries on from there or drops the ponder search.
+     */
+    private void ponder() {
+        if (!vsComputer() || position.isWhiteToMove() != playerColor)
+            return;
+        String[] last = bestMove;
+        if (last == null || last.length < 2 || last[1].isEmpty() || findLegal(Move.parse(last[1])) == Move.NONE)
+            return;
+        engine.ponder(last[1], clock.remaining(Position.WHITE), clock.remaining(Position.BLACK),
+            clock.increment(), clock.increment());
+    }
+
+    private boolean vsComputer() {
+        return !freeMode && !puzzleMode && !multiplayerMode;
+    }
+
+    private boolean aiToMove() {
+        return vsComputer() && position.isWhiteToMove() != playerColor;
+    }
+
+    // The AI's own moves come from the book while it lasts, then are timed
+    // from the clock; otherwise a short fixed search
     public String[] getBestMove() throws IOException{
-        return stockfishAI.getBestMove();
+        if (!aiToMove())
+            return engine.getBestMove();
+        if (book != null) {
+            int move = book.probe(position);
+            if (move != Move.NONE) {
+                // No search follows, so end whatever the engine is still
+                // thinking about, such as a ponder search
+                engine.stop();
+                System.out.println("Book move: " + Move.toUci(move));
+                return new String[] {Move.toUci(move), ""};
+            }
+        }
+        return engine.getBestMove(clock.remaining(Position.WHITE), clock.remaining(Position.BLACK),
+            clock.increment(), clock.increment());
     }
 
-    public String getLegalMoves() throws IOException {
-        return stockfishAI.getLegalMoves();
+    private void updateLegalMoves() {
+        int count = MoveGenerator.generateLegal(position, moveBuffer);
+        long[] targets = new long[64];
+        for (int i = 0; i < count; i++)
+            targets[Move.from(moveBuffer[i])] |= 1L << Move.to(moveBuffer[i]);
+        legalMoves = Arrays.copyOf(moveBuffer, count);
+        legalTargets = targets;
     }
 
-    public String getFenFromAI() {
-        return stockfishAI.getFEN();
+    // Squares the piece on from can move to this ply, as a bitmask
+    public long getLegalTargets(int from) {
+        return legalTargets[from];
     }
 
-    private void checkforcheckmate() {
-        try {
-            //System.out.println("FEN after move: " + fen + "\nStockfish's Best Move: " + bestMove);
-            if (stockfishAI.checkmate()) {
-                System.out.println("Checkmate!");
-                gameOver = true;
+    // For logging only; the input thread uses the bitmasks
+    public String getLegalMoves() {
+        int[] moves = legalMoves;
+        StringBuilder text = new StringBuilder(moves.length * 6);
+        for (int move : moves) {
+            Move.appendUci(text, move);
+            text.append(',');
+        }
+        return text.toString();
+    }
 
-                Timer.schedule(new Timer.Task() {
-                    @Override
-                    public void run() {
-                        ScreenManager.getInstance().setScreen(gameOverScreen);
-                    }
-                }, 2f); // 2 seconds delay
+    public String getFen() {
+        return Fen.write(position);
+    }
+
+    // Mate, stalemate and the draw rules are decided locally from the position
+    private void checkForGameOver() {
+        GameResult result = GameResult.evaluate(position, legalMoves.length);
+        if (!result.isGameOver())
+            return;
+        String description = result.describe(position);
+        System.out.println(description);
+        gameOver = true;
+
+        Timer.schedule(new Timer.Task() {
+            @Override
+            public void run() {
+                gameOverScreen.setResult(description);
+                ScreenManager.getInstance().setScreen(gameOverScreen);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        }, 2f); // 2 seconds delay
     }
 
-    public boolean isLegalMove(String move) {
-        if(!puzzleMode && !stockfishAI.parseLegalMoves(move, legalMoves)){
+    public boolean isLegalMove(int from, int to) {
+        if(!puzzleMode && (legalTargets[from] & (1L << to)) == 0){
             System.out.println("Illegal move");
             return false;
         }
-        else if (puzzleMode && !solutionList.isEmpty()) {
-            if (!solutionList.peek().equals(move)) {
+        else if (puzzleMode && !puzzleSolved()) {
+            int expected = solution[solutionIndex];
+            if (Move.from(expected) != from || Move.to(expected) != to) {
                 System.out.println("Incorrect puzzle move");
                 return false;
             }
@@ -257,35 +364,62 @@ public class GameManager extends ScreenAdapter {
         return true;
     }
 
+    // Legal move with its flags for a packed move without them, or NONE
+    private int findLegal(int move) {
+        for (int legal : legalMoves) {
+            if (Move.withoutFlags(legal) == move)
+                return legal;
+        }
+        return Move.NONE;
+    }
+
+    // UCI text from the UI, the network and the engine becomes a packed move here
     public void queueMove(String move) {
+        int legal = findLegal(Move.parse(move));
+        if (legal == Move.NONE) {
+            System.out.println("Ignoring move: " + move);
+            return;
+        }
+        queueMove(legal);
+    }
+
+    public void queueMove(int move) {
         moveQueue.add(move);
     }
 
-    public void movePiece(String move) {
-        if (move.isEmpty())
+    // Edge for the board input, which knows squares and the promotion choice
+    public void queueMove(int from, int to, int promotion) {
+        int legal = findLegal(Move.encode(from, to, promotion, 0));
+        if (legal == Move.NONE) {
+            System.out.println("Ignoring move from " + from + " to " + to);
             return;
-        if (puzzleMode && !solutionList.isEmpty())
-            if(!solutionList.peek().equals(move))
-                return;
+        }
+        queueMove(legal);
+    }
+
+    // False when the move is not played: illegal, or off the puzzle's solution
+    public boolean movePiece(int move) {
+        if (move == Move.NONE || findLegal(Move.withoutFlags(move)) != move) {
+            System.out.println("Not a legal move: " + Move.toUci(move));
+            return false;
+        }
+        if (puzzleMode && !puzzleSolved())
+            if (solution[solutionIndex] != Move.withoutFlags(move))
+                return false;
             else
-                solutionList.remove();
-        char[] parsedMove = parseMove(move);
-        int startCol = parsedMove[0];
-        int startRow = parsedMove[1];
-        int endCol = parsedMove[2];
-        int endRow = parsedMove[3];
-        char newRank;
+                solutionIndex++;
+        int startCol = Move.from(move) & 7;
+        int startRow = Move.from(move) >>> 3;
+        int endCol = Move.to(move) & 7;
+        int endRow = Move.to(move) >>> 3;
         Piece piece = board[startRow][startCol];
 
         Piece contested = board[endRow][endCol];
         // Ensure the right piece color is moving according to the turn
         if (piece != null) {
-            if (piece instanceof Pawn) {
-                if (FEN.contains(move.substring(2))) {
-                    int offset = piece.isWhite() ? -1 : +1;
-                    contested = board[endRow + offset][endCol];
-                    board[endRow + offset][endCol] = null;
-                }
+            if (Move.isEnPassant(move)) {
+                contested = board[startRow][endCol];
+                board[startRow][endCol] = null;
             }
             if (contested != null) {
                 contested.remove();
@@ -299,11 +433,11 @@ public class GameManager extends ScreenAdapter {
             piece.addAction(Actions.moveTo(targetX, targetY, duration, Interpolation.linear));
             board[endRow][endCol] = piece;
             board[startRow][startCol] = null;
-            if (parsedMove.length == 5) {
-                newRank = parsedMove[4];
+            int promotion = Move.promotion(move);
+            if (promotion != 0) {
                 // Changes piece on next render call
                 Gdx.app.postRunnable(() -> {
-                    promote(newRank, endRow, endCol);
+                    promote(promotion, endRow, endCol);
                 });
             }
             if (piece instanceof Rook) {
@@ -311,30 +445,31 @@ public class GameManager extends ScreenAdapter {
             }
             if (piece instanceof King) {
                 piece.setMoved(true);
-                handleCastling(move);
+                if (Move.isCastle(move))
+                    handleCastling(move);
             }
+            // Updates the Zobrist key too, including the rook hop and rights
+            position.makeMove(move);
 
             printBoard();
-            System.out.println("Moved: " + move);
-            moveList.push(move);
+            System.out.println("Moved: " + Move.toUci(move) + " key: " + Long.toHexString(position.key()));
 
             if (moveSound != null) {
                 moveSound.play(); // Play move sound
             }
-
+            return true;
         }
+        return false;
     }
 
-    //King : "e1c1 e1g1 e8c8 e8g8", Rook: "a1d1 h1f1 a8d8 h8f8"
-    private void handleCastling(String move) {
-        if (!castleMoves.containsKey(move))
-            return;
-        String rookMove = castleMoves.get(move);
-        char[] parsedMove = parseMove(rookMove);
-        int startCol = parsedMove[0];
-        int startRow = parsedMove[1];
-        int endCol = parsedMove[2];
-        int endRow = parsedMove[3];
+    // The rook jumps over the king: h-file to f-file, or a-file to d-file
+    private void handleCastling(int move) {
+        int to = Move.to(move);
+        boolean kingside = to > Move.from(move);
+        int startCol = kingside ? 7 : 0;
+        int endCol = kingside ? 5 : 3;
+        int startRow = to >>> 3;
+        int endRow = startRow;
         int tileSize = Math.min(Gdx.graphics.getHeight(), Gdx.graphics.getWidth()) / 8;
         float targetX = endCol * tileSize;
         float targetY = endRow * tileSize;
@@ -343,48 +478,101 @@ public class GameManager extends ScreenAdapter {
         board[endRow][endCol].addAction(Actions.moveTo(targetX, targetY, duration, Interpolation.linear));
     }
 
-    public void undo() {
-        String move = moveList.pop();
-        char[] temp = parseMove(move);
-        board[temp[2]][temp[3]].setPosition(temp[0], temp[1]);
+    // Asks the game loop to take back the last move; not offered online
+    public void requestUndo() {
+        if (gameOver || multiplayerMode)
+            return;
+        moveQueue.add(UNDO);
+    }
+
+    /**
+     * Runs on the game loop. Against the computer, on the player's turn, the
+     * AI's reply goes too so it is the player's turn again; while the AI is
+     * thinking only the player's move goes. The clock, the puzzle's place in
+     * its solution and the engine's position all go back with the board.
+     */
+    private void takeBack() throws InterruptedException {
+        int plies = 1;
+        if (!freeMode && whiteTurn == playerColor) {
+            // Nothing of the player's to take back yet
+            if (position.ply() < 2)
+                return;
+            plies = 2;
+        }
+        if (position.ply() < plies)
+            return;
+        takeBacks++;
+        for (int i = 0; i < plies; i++) {
+            position.unmakeMove();
+            clock.takeBack();
+            if (puzzleMode)
+                solutionIndex--;
+        }
+        bestMove = null;
+        whiteTurn = position.isWhiteToMove();
+        System.out.println("Took back " + plies + " move(s)");
+        // Actors have to be swapped on the render thread; wait so the
+        // board view is whole before the next move touches it
+        CountDownLatch rebuilt = new CountDownLatch(1);
+        Gdx.app.postRunnable(() -> {
+            rebuildBoardView();
+            rebuilt.countDown();
+        });
+        rebuilt.await();
+        // Sends the shorter move list, which also drops any ponder search
+        updateBoardState();
+        if (!freeMode && whiteTurn != playerColor)
+            aiTurn();
     }
 
-    private static char[] parseMove(String move) {
-        if (move == null) {
-            return null;
+    private void rebuildBoardView() {
+        Stage stage = null;
+        for (Piece[] row : board) {
+            for (Piece piece : row) {
+                if (piece != null && piece.getStage() != null)
+                    stage = piece.getStage();
+                if (piece != null)
+                    piece.remove();
+            }
+        }
+        fillBoardView();
+        if (stage == null)
+            return;
+        int tileSize = Math.min(Gdx.graphics.getHeight(), Gdx.graphics.getWidth()) / 8;
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                Piece piece = board[row][col];
+                if (piece != null) {
+                    piece.setPosition(col * tileSize, row * tileSize);
+                    piece.setWidth(tileSize);
+                    piece.setHeight(tileSize - 5);
+                    piece.setVisible(true);
+                    stage.addActor(piece);
+                }
+            }
         }
-        char[] parsed;
-        //parsed = move.getBytes(StandardCharsets.US_ASCII);
-        parsed = move.toCharArray();
-
-        // Changes rank/file ASCII representation into array indexes
-        parsed[0] -= 'a';
-        parsed[1] -= '1';
-        parsed[2] -= 'a';
-        parsed[3] -= '1';
-        return parsed;
     }
 
-    private void promote(char rank, int row, int col) {
+    private void promote(int type, int row, int col) {
         Piece oldPiece;
         Piece newPiece;
-        switch (rank) {
-            case 'q':
+        switch (type) {
+            case Position.QUEEN:
                 oldPiece = board[row][col];
                 newPiece = new Queen(oldPiece.isWhite());
                 changePiece(row, col, oldPiece, newPiece);
                 return;
-            case 'r':
+            case Position.ROOK:
                 oldPiece = board[row][col];
                 newPiece = new Rook(oldPiece.isWhite());
                 changePiece(row, col, oldPiece, newPiece);
                 return;
-            case 'b':
+            case Position.BISHOP:
                 oldPiece = board[row][col];
                 newPiece = new Bishop(oldPiece.isWhite());
                 changePiece(row, col, oldPiece, newPiece);
                 return;
-            case 'n':
+            case Position.KNIGHT:
                 oldPiece = board[row][col];
                 newPiece = new Knight(oldPiece.isWhite());
                 changePiece(row, col, oldPiece, newPiece);
@@ -413,20 +601,22 @@ public class GameManager extends ScreenAdapter {
         board[row][col] = np;
     }
 
-    public void sendPosToStockfish(String fen) {
-        System.out.println(fen);
-        stockfishAI.sendPosition(fen);
+    // The start position and every move since, so the engine sees the
+    // game's history and can tell repetitions
+    private String positionCommand() {
+        StringBuilder sb = new StringBuilder("position fen ").append(startFen);
+        if (position.ply() > 0)
+            sb.append(" moves");
+        for (int i = 0; i < position.ply(); i++) {
+            sb.append(' ');
+            Move.appendUci(sb, position.moveAt(i));
+        }
+        return sb.toString();
     }
 
-    private String appendLastMove(String fen) {
-        StringBuilder fenWithMove = new StringBuilder();
-        fenWithMove.append(fen);
-        if (!moveList.isEmpty()) {
-            fenWithMove.append(" moves ");
-            String move = moveList.peek();
-            fenWithMove.append(move);
-        }
-        return fenWithMove.toString();
+    public void sendPosToStockfish(String fen) {
+        System.out.println(fen);
+        engine.sendPosition(fen);
     }
 
     public Piece getPieceFromString(String p){
@@ -454,39 +644,27 @@ public class GameManager extends ScreenAdapter {
     }
 
     public void parseFen(String fen){
-        for (Piece[] pieces : board) {
-            Arrays.fill(pieces, null);
-        }
-        for (int i = 0; i < possibilities.length; i++) {
-            for (int j = 0; j < possibilities[i].length; j++) {
-                possibilities[i][j] = new Blank();
-            }
-        }
-        int row = 7;
-        int col = 0;
-        for(int i = 0; i < fen.length(); i++){
-            if(fen.charAt(i) == '/'){
-                row--;
-                col = 0;
-                continue;
-            } else if (Character.isDigit(fen.charAt(i))) {
-                col = col + Character.getNumericValue(fen.charAt(i)) - 1;
-            } else if (fen.charAt(i) == ' ') {
-                break;
-            }
-            else{
-                board[row][col] = getPieceFromString(Character.toString(fen.charAt(i)));
-            }
-            col++;
-        }
-        String[] parts = fen.split(" ");
-        whiteTurn = parts[1].equals("w");
+        Fen.parse(fen, position);
+        fillBoardView();
+        whiteTurn = position.isWhiteToMove();
         if ((multiplayerMode && !isHost) || puzzleMode)
             playerColor = !whiteTurn;
         else
             playerColor = whiteTurn;
     }
 
+    // The Piece[][] is only a view, so build it from the position
+    private void fillBoardView() {
+        for (Piece[] pieces : board) {
+            Arrays.fill(pieces, null);
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            int p = position.pieceAt(sq);
+            if (p != Position.EMPTY)
+                board[sq / 8][sq % 8] = getPieceFromString(Character.toString(Position.pieceChar(p)));
+        }
+    }
+
     public boolean isWhiteTurn() {
         return whiteTurn;
     }
@@ -531,7 +709,7 @@ public class GameManager extends ScreenAdapter {
 
     // Saves the game state by writing the FEN to a file in the games CWD
     public void saveGame() {
-        String gameFen = getFenFromAI();
+        String gameFen = getFen();
                 //create saves folder if it does not exist
         File folder = new File("saves");
         if(!folder.exists()){
@@ -561,6 +739,26 @@ public class GameManager extends ScreenAdapter {
         }
     }
 
+    private synchronized void releaseEngine() {
+        if (engineReleased)
+            return;
+        engineReleased = true;
+        if (engine != null) {
+            try {
+                engine.release();  // Hand the AI engine back for the next game
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (book != null) {
+            try {
+                book.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     public void exitGame() {
         if (moveSound != null) {
             moveSound.dispose(); // Added here
@@ -571,14 +769,12 @@ public class GameManager extends ScreenAdapter {
         if (killSound != null) {
             killSound.dispose();
         }
-        if (stockfishAI != null) {
-            try {
-                stockfishAI.close();  // Close the Stockfish AI
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-        gameLoopThread.interrupt();
+        gameOver = true;
+        // The game loop releases the engine once its current move is done
+        if (gameLoopThread != null)
+            gameLoopThread.interrupt();
+        else
+            releaseEngine();
         Gdx.input.setInputProcessor(null);
         // Perform any other cleanup needed for the game
         System.out.println("GameManager closed.");
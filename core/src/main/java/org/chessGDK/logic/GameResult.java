@@ -0,0 +1,80 @@
+package org.chessGDK.logic;
+
+/**
+ * How a game stands, worked out from the position, its move history and the
+ * endgame bitbases without asking the engine.
+ */
+public enum GameResult {
+    ONGOING("Game in progress"),
+    CHECKMATE("Checkmate"),
+    STALEMATE("Draw by stalemate"),
+    THREEFOLD_REPETITION("Draw by threefold repetition"),
+    FIFTY_MOVE_RULE("Draw by the fifty-move rule"),
+    INSUFFICIENT_MATERIAL("Draw by insufficient material"),
+    BITBASE_DRAW("Draw - the endgame bitbase shows no win");
+
+    private static final long LIGHT_SQUARES = 0x55AA55AA55AA55AAL;
+
+    private final String description;
+
+    GameResult(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean isGameOver() {
+        return this != ONGOING;
+    }
+
+    /**
+     * Classifies the position given how many legal moves the side to move
+     * has. Mate and stalemate take precedence over the draw rules.
+     */
+    public static GameResult evaluate(Position pos, int legalMoveCount) {
+        if (legalMoveCount == 0)
+            return pos.isInCheck() ? CHECKMATE : STALEMATE;
+        if (pos.halfmoveClock() >= 100)
+            return FIFTY_MOVE_RULE;
+        if (pos.repetitionCount() >= 2)
+            return THREEFOLD_REPETITION;
+        if (isInsufficientMaterial(pos))
+            return INSUFFICIENT_MATERIAL;
+        // Endings that can't be won with best play are adjudicated
+        if (Bitbase.probe(pos) == Bitbase.DRAW)
+            return BITBASE_DRAW;
+        return ONGOING;
+    }
+
+    public static GameResult evaluate(Position pos) {
+        return evaluate(pos, MoveGenerator.generateLegal(pos, new int[MoveGenerator.MAX_MOVES]));
+    }
+
+    // K v K, a single minor piece, or only bishops that all share a square color
+    public static boolean isInsufficientMaterial(Position pos) {
+        long heavy = 0L;
+        long knights = 0L;
+        long bishops = 0L;
+        for (int color = Position.WHITE; color <= Position.BLACK; color++) {
+            heavy |= pos.pieces(color, Position.PAWN) | pos.pieces(color, Position.ROOK)
+                | pos.pieces(color, Position.QUEEN);
+            knights |= pos.pieces(color, Position.KNIGHT);
+            bishops |= pos.pieces(color, Position.BISHOP);
+        }
+        if (heavy != 0)
+            return false;
+        long minors = knights | bishops;
+        if (Long.bitCount(minors) <= 1)
+            return true;
+        return knights == 0 && ((bishops & LIGHT_SQUARES) == 0 || (bishops & ~LIGHT_SQUARES) == 0);
+    }
+
+    // Text for the game over screen, naming the winner of a checkmate
+    public String describe(Position pos) {
+        if (this == CHECKMATE)
+            return description + " - " + (pos.isWhiteToMove() ? "Black" : "White") + " wins";
+        return description;
+    }
+}
@@ -0,0 +1,102 @@
+package org.chessGDK.logic;
+
+/**
+ * Moves are packed into an int: bits 0-5 hold the from square, 6-11 the to
+ * square, 12-14 the promotion piece type (0 for none) and 15-17 the flags.
+ * UCI text is only produced at the engine and network edges.
+ */
+public final class Move {
+    public static final int NONE = 0;
+
+    public static final int FLAG_EN_PASSANT = 1;
+    public static final int FLAG_CASTLE = 2;
+    public static final int FLAG_DOUBLE_PUSH = 4;
+
+    private static final String PROMOTION_CHARS = " nbrq";
+
+    private Move() {}
+
+    public static int encode(int from, int to, int promotion, int flags) {
+        return from | (to << 6) | (promotion << 12) | (flags << 15);
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int promotion(int move) {
+        return (move >>> 12) & 0x7;
+    }
+
+    public static int flags(int move) {
+        return move >>> 15;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (flags(move) & FLAG_EN_PASSANT) != 0;
+    }
+
+    public static boolean isCastle(int move) {
+        return (flags(move) & FLAG_CASTLE) != 0;
+    }
+
+    // from, to and promotion without the flags, as written in UCI
+    public static int withoutFlags(int move) {
+        return move & 0x7FFF;
+    }
+
+    /**
+     * Parses UCI text such as "e2e4" or "e7e8q" into a move without flags,
+     * or NONE if the text is not a well formed move.
+     */
+    public static int parse(String uci) {
+        if (uci == null || uci.length() < 4)
+            return NONE;
+        int fromCol = uci.charAt(0) - 'a';
+        int fromRow = uci.charAt(1) - '1';
+        int toCol = uci.charAt(2) - 'a';
+        int toRow = uci.charAt(3) - '1';
+        if ((fromCol | fromRow | toCol | toRow) < 0 || fromCol > 7 || fromRow > 7 || toCol > 7 || toRow > 7)
+            return NONE;
+        int promotion = 0;
+        if (uci.length() > 4) {
+            promotion = PROMOTION_CHARS.indexOf(uci.charAt(4));
+            if (promotion <= 0)
+                return NONE;
+        }
+        return encode(Position.square(fromCol, fromRow), Position.square(toCol, toRow), promotion, 0);
+    }
+
+    /**
+     * Finds the move in the list matching the UCI text, or NONE.
+     */
+    public static int find(int[] moves, int count, String uci) {
+        int parsed = parse(uci);
+        if (parsed == NONE)
+            return NONE;
+        for (int i = 0; i < count; i++) {
+            if (withoutFlags(moves[i]) == parsed)
+                return moves[i];
+        }
+        return NONE;
+    }
+
+    public static String toUci(int move) {
+        StringBuilder sb = new StringBuilder(5);
+        appendUci(sb, move);
+        return sb.toString();
+    }
+
+    public static void appendUci(StringBuilder sb, int move) {
+        int from = from(move);
+        int to = to(move);
+        sb.append((char) ('a' + (from & 7))).append((char) ('1' + (from >>> 3)));
+        sb.append((char) ('a' + (to & 7))).append((char) ('1' + (to >>> 3)));
+        if (promotion(move) != 0)
+            sb.append(PROMOTION_CHARS.charAt(promotion(move)));
+    }
+}
@@ -0,0 +1,181 @@
+package org.chessGDK.logic;
+
+import static org.chessGDK.logic.Position.*;
+
+/**
+ * Generates strictly legal moves. Checks and pins are resolved up front with
+ * a check mask and pin lines, so no move has to be played and taken back to
+ * test whether it leaves the king in check.
+ */
+public final class MoveGenerator {
+    // No legal chess position has more than 218 moves
+    public static final int MAX_MOVES = 256;
+
+    private static final long RANK_1 = 0xFFL;
+    private static final long RANK_8 = 0xFFL << 56;
+
+    private MoveGenerator() {}
+
+    /**
+     * Writes the legal moves for the side to move into the array and returns
+     * how many there are. The array must hold at least MAX_MOVES entries.
+     */
+    public static int generateLegal(Position pos, int[] moves) {
+        int us = pos.sideToMove();
+        int them = us ^ 1;
+        long own = pos.pieces(us);
+        long enemy = pos.pieces(them);
+        long occupied = own | enemy;
+        int king = pos.kingSquare(us);
+        int count = 0;
+
+        // King moves are checked against attacks with the king lifted off the board
+        long kingOff = occupied ^ (1L << king);
+        for (long targets = Attacks.KING[king] & ~own; targets != 0; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            if (!pos.isAttacked(to, them, kingOff))
+                moves[count++] = Move.encode(king, to, 0, 0);
+        }
+
+        long checkers = pos.attackersTo(king, occupied) & enemy;
+        if (Long.bitCount(checkers) > 1)
+            return count;
+
+        long checkMask = ~0L;
+        if (checkers != 0) {
+            int checker = Long.numberOfTrailingZeros(checkers);
+            checkMask = checkers | Attacks.between(king, checker);
+        }
+
+        long pinned = pinnedPieces(pos, us, king, occupied);
+        long targetMask = ~own & checkMask;
+
+        count = addPieceMoves(pos, moves, count, us, KNIGHT, pinned, targetMask, occupied, king);
+        count = addPieceMoves(pos, moves, count, us, BISHOP, pinned, targetMask, occupied, king);
+        count = addPieceMoves(pos, moves, count, us, ROOK, pinned, targetMask, occupied, king);
+        count = addPieceMoves(pos, moves, count, us, QUEEN, pinned, targetMask, occupied, king);
+        count = addPawnMoves(pos, moves, count, us, pinned, checkMask, enemy, occupied, king);
+
+        if (checkers == 0)
+            count = addCastling(pos, moves, count, us, occupied);
+        return count;
+    }
+
+    private static long pinnedPieces(Position pos, int us, int king, long occupied) {
+        int them = us ^ 1;
+        long queens = pos.pieces(them, QUEEN);
+        long snipers = (Attacks.rook(king, 0L) & (pos.pieces(them, ROOK) | queens))
+            | (Attacks.bishop(king, 0L) & (pos.pieces(them, BISHOP) | queens));
+        long pinned = 0L;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            long blockers = Attacks.between(king, sniper) & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0)
+                pinned |= blockers & pos.pieces(us);
+        }
+        return pinned;
+    }
+
+    private static int addPieceMoves(Position pos, int[] moves, int count, int us, int type,
+                                     long pinned, long targetMask, long occupied, int king) {
+        for (long pieces = pos.pieces(us, type); pieces != 0; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            long targets = attacks(type, from, occupied) & targetMask;
+            if ((pinned & (1L << from)) != 0)
+                targets &= Attacks.line(king, from);
+            for (; targets != 0; targets &= targets - 1)
+                moves[count++] = Move.encode(from, Long.numberOfTrailingZeros(targets), 0, 0);
+        }
+        return count;
+    }
+
+    private static long attacks(int type, int from, long occupied) {
+        switch (type) {
+            case KNIGHT: return Attacks.KNIGHT[from];
+            case BISHOP: return Attacks.bishop(from, occupied);
+            case ROOK: return Attacks.rook(from, occupied);
+            case QUEEN: return Attacks.queen(from, occupied);
+            default: return Attacks.KING[from];
+        }
+    }
+
+    private static int addPawnMoves(Position pos, int[] moves, int count, int us, long pinned,
+                                    long checkMask, long enemy, long occupied, int king) {
+        int forward = us == WHITE ? 8 : -8;
+        long startRank = us == WHITE ? 0xFF00L : 0xFFL << 48;
+        long promoRank = us == WHITE ? RANK_8 : RANK_1;
+        int ep = pos.epSquare();
+
+        for (long pawns = pos.pieces(us, PAWN); pawns != 0; pawns &= pawns - 1) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            long allowed = checkMask;
+            if ((pinned & (1L << from)) != 0)
+                allowed &= Attacks.line(king, from);
+
+            int push = from + forward;
+            if ((occupied & (1L << push)) == 0) {
+                if ((allowed & (1L << push)) != 0)
+                    count = addPawnMove(moves, count, from, push, promoRank, 0);
+                int doublePush = push + forward;
+                if ((startRank & (1L << from)) != 0 && (occupied & (1L << doublePush)) == 0
+                    && (allowed & (1L << doublePush)) != 0)
+                    moves[count++] = Move.encode(from, doublePush, 0, Move.FLAG_DOUBLE_PUSH);
+            }
+
+            for (long caps = Attacks.PAWN[us][from] & enemy & allowed; caps != 0; caps &= caps - 1)
+                count = addPawnMove(moves, count, from, Long.numberOfTrailingZeros(caps), promoRank, 0);
+
+            if (ep != NO_SQUARE && (Attacks.PAWN[us][from] & (1L << ep)) != 0
+                && legalEnPassant(pos, us, from, ep, occupied, king))
+                moves[count++] = Move.encode(from, ep, 0, Move.FLAG_EN_PASSANT);
+        }
+        return count;
+    }
+
+    private static int addPawnMove(int[] moves, int count, int from, int to, long promoRank, int flags) {
+        if ((promoRank & (1L << to)) != 0) {
+            moves[count++] = Move.encode(from, to, QUEEN, flags);
+            moves[count++] = Move.encode(from, to, ROOK, flags);
+            moves[count++] = Move.encode(from, to, BISHOP, flags);
+            moves[count++] = Move.encode(from, to, KNIGHT, flags);
+        } else {
+            moves[count++] = Move.encode(from, to, 0, flags);
+        }
+        return count;
+    }
+
+    // En passant removes two pieces from a rank, so test the resulting board directly
+    private static boolean legalEnPassant(Position pos, int us, int from, int ep, long occupied, int king) {
+        int them = us ^ 1;
+        int captured = us == WHITE ? ep - 8 : ep + 8;
+        long after = (occupied ^ (1L << from) ^ (1L << captured)) | (1L << ep);
+        long queens = pos.pieces(them, QUEEN);
+        if ((Attacks.rook(king, after) & (pos.pieces(them, ROOK) | queens)) != 0)
+            return false;
+        if ((Attacks.bishop(king, after) & (pos.pieces(them, BISHOP) | queens)) != 0)
+            return false;
+        long otherCheckers = (Attacks.KNIGHT[king] & pos.pieces(them, KNIGHT))
+            | (Attacks.PAWN[us][king] & pos.pieces(them, PAWN) & ~(1L << captured));
+        return otherCheckers == 0;
+    }
+
+    private static int addCastling(Position pos, int[] moves, int count, int us, long occupied) {
+        int rights = pos.castlingRights();
+        int them = us ^ 1;
+        int base = us == WHITE ? 0 : 56;
+        int kingside = us == WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+        int queenside = us == WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+
+        if ((rights & kingside) != 0
+            && (occupied & (0x60L << base)) == 0
+            && !pos.isAttacked(base + 5, them, occupied)
+            && !pos.isAttacked(base + 6, them, occupied))
+            moves[count++] = Move.encode(base + 4, base + 6, 0, Move.FLAG_CASTLE);
+        if ((rights & queenside) != 0
+            && (occupied & (0x0EL << base)) == 0
+            && !pos.isAttacked(base + 3, them, occupied)
+            && !pos.isAttacked(base + 2, them, occupied))
+            moves[count++] = Move.encode(base + 4, base + 2, 0, Move.FLAG_CASTLE);
+        return count;
+    }
+}
@@ -0,0 +1,39 @@
+package org.chessGDK.logic;
+
+/**
+ * Blocking FIFO of packed moves handed to the game loop. It stores plain
+ * ints in a ring buffer, so queuing a move boxes nothing.
+ */
+public class MoveQueue {
+    private int[] moves = new int[16];
+    private int head;
+    private int size;
+
+    public synchronized void add(int move) {
+        if (size == moves.length) {
+            int[] grown = new int[moves.length * 2];
+            for (int i = 0; i < size; i++)
+                grown[i] = moves[(head + i) % moves.length];
+            moves = grown;
+            head = 0;
+        }
+        moves[(head + size) % moves.length] = move;
+        size++;
+        notifyAll();
+    }
+
+    // Blocks until a move is added
+    public synchronized int take() throws InterruptedException {
+        while (size == 0)
+            wait();
+        int move = moves[head];
+        head = (head + 1) % moves.length;
+        size--;
+        return move;
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+    }
+}
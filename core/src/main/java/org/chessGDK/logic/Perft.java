@@ -0,0 +1,257 @@
+package org.chessGDK.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Perft harness for the move generator. Counts the leaf nodes of the legal
+ * move tree for reference positions and compares them with published
+ * values. Each position is counted on a one-thread ForkJoinPool and on one
+ * with every core, both with a fresh hash of subtree counts, so the
+ * nodes/second they report differ only in threads. Run it with
+ * "gradlew core:perft"; pass
+ * -PperftArgs=1 to search one ply deeper than the defaults, or
+ * -PperftArgs="divide 6 [fen]" to list the count under each root move.
+ */
+public class Perft {
+    // FEN, depth, expected nodes
+    private static final Object[][] REFERENCE = {
+        {Position.START_FEN, 5, 4865609L},
+        {"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 4, 4085603L},
+        {"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 5, 674624L},
+        {"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 4, 422333L},
+        {"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 4, 2103487L},
+        {"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", 4, 3894594L},
+    };
+
+    // Node counts one ply deeper, for the same positions
+    private static final long[] REFERENCE_DEEPER = {
+        119060324L, 193690690L, 11030083L, 15833292L, 89941194L, 164075551L
+    };
+
+    // Subtrees at least this deep may be forked into their own tasks
+    private static final int SPLIT_DEPTH = 3;
+    // Keep forking until about this many tasks per thread exist
+    private static final int TASKS_PER_THREAD = 16;
+    private static final int HASH_MB = 64;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 1 && args[0].equals("divide")) {
+            divide(args);
+            return;
+        }
+        boolean deeper = args.length > 0 && args[0].equals("1");
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool pool = new ForkJoinPool();
+        String threads = threads(pool.getParallelism());
+        boolean failed = false;
+        long totalNodes = 0;
+        long serialNanos = 0;
+        long parallelNanos = 0;
+
+        try {
+            // Untimed, so the JIT has compiled the counting code before the
+            // one-thread run, which goes first
+            for (int i = 0; i < REFERENCE.length; i++) {
+                parallelPerft(new Position((String) REFERENCE[i][0]), 3, single, new Hash(HASH_MB));
+                parallelPerft(new Position((String) REFERENCE[i][0]), 3, pool, new Hash(HASH_MB));
+            }
+            for (int i = 0; i < REFERENCE.length; i++) {
+                String fen = (String) REFERENCE[i][0];
+                int depth = (Integer) REFERENCE[i][1] + (deeper ? 1 : 0);
+                long expected = deeper ? REFERENCE_DEEPER[i] : (Long) REFERENCE[i][2];
+
+                // A fresh hash each time so the timing is not a replay
+                long start = System.nanoTime();
+                long nodes = parallelPerft(new Position(fen), depth, single, new Hash(HASH_MB));
+                long serial = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                long parallelNodes = parallelPerft(new Position(fen), depth, pool, new Hash(HASH_MB));
+                long parallel = System.nanoTime() - start;
+
+                boolean ok = nodes == expected && parallelNodes == expected;
+                failed |= !ok;
+                totalNodes += nodes;
+                serialNanos += serial;
+                parallelNanos += parallel;
+                System.out.printf("%s  depth %d  nodes %d (expected %d)  %s%n", fen, depth, nodes, expected, ok ? "OK" : "FAIL");
+                System.out.printf("    1 thread: %,d nps   %s: %,d nps   speedup %.2fx%n",
+                    nps(nodes, serial), threads, nps(parallelNodes, parallel), (double) serial / parallel);
+            }
+        } finally {
+            single.shutdown();
+            pool.shutdown();
+        }
+        System.out.printf("Total %,d nodes   1 thread: %,d nps   %s: %,d nps   speedup %.2fx%n",
+            totalNodes, nps(totalNodes, serialNanos), threads, nps(totalNodes, parallelNanos),
+            (double) serialNanos / parallelNanos);
+        if (failed) {
+            System.out.println("Perft FAILED");
+            System.exit(1);
+        }
+        System.out.println("Perft passed");
+    }
+
+    // divide <depth> [fen]: the subtree count under each root move, for
+    // finding where a generator disagrees with a reference engine
+    private static void divide(String[] args) {
+        int depth = Integer.parseInt(args[1]);
+        String fen = Position.START_FEN;
+        if (args.length > 2) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 2; i < args.length; i++)
+                sb.append(args[i]).append(' ');
+            fen = sb.toString().trim();
+        }
+        Position pos = new Position(fen);
+        ForkJoinPool pool = new ForkJoinPool();
+        Hash hash = new Hash(HASH_MB);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(pos, moves);
+        long total = 0;
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < count; i++) {
+                pos.makeMove(moves[i]);
+                long nodes = depth <= 1 ? 1 : parallelPerft(pos, depth - 1, pool, hash);
+                pos.unmakeMove();
+                total += nodes;
+                System.out.println(Move.toUci(moves[i]) + ": " + nodes);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        System.out.printf("%nMoves: %d%nNodes: %d%nTime: %d ms%n", count, total, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static String threads(int count) {
+        return count == 1 ? "1 thread" : count + " threads";
+    }
+
+    private static long nps(long nodes, long nanos) {
+        return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+    }
+
+    public static long perft(Position pos, int depth) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(pos, moves);
+        // Bulk count the last ply instead of playing each move
+        if (depth <= 1)
+            return depth == 1 ? count : 1;
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(moves[i]);
+            nodes += perft(pos, depth - 1);
+            pos.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Counts on the pool. Subtrees are forked from the root down until there
+     * are enough tasks to keep every thread busy, so a narrow root still
+     * splits, and counts for positions reached by transposition come from
+     * the shared hash.
+     */
+    public static long parallelPerft(Position pos, int depth, ForkJoinPool pool, Hash hash) {
+        int target = pool.getParallelism() * TASKS_PER_THREAD;
+        return pool.invoke(new PerftTask(new Position(pos), depth, 1, target, hash));
+    }
+
+    private static final class PerftTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Position pos;
+        private final int depth;
+        // How many tasks exist at this level of the split
+        private final long width;
+        private final int target;
+        private final Hash hash;
+
+        PerftTask(Position pos, int depth, long width, int target, Hash hash) {
+            this.pos = pos;
+            this.depth = depth;
+            this.width = width;
+            this.target = target;
+            this.hash = hash;
+        }
+
+        @Override
+        protected Long compute() {
+            if (depth < SPLIT_DEPTH || width >= target)
+                return hashedPerft(pos, depth, new int[depth + 1][MoveGenerator.MAX_MOVES], hash);
+            long cached = hash.probe(pos.key(), depth);
+            if (cached >= 0)
+                return cached;
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int count = MoveGenerator.generateLegal(pos, moves);
+            List<PerftTask> tasks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Position child = new Position(pos);
+                child.makeMove(moves[i]);
+                tasks.add(new PerftTask(child, depth - 1, width * count, target, hash));
+            }
+            long nodes = 0;
+            for (PerftTask task : invokeAll(tasks))
+                nodes += task.join();
+            hash.store(pos.key(), depth, nodes);
+            return nodes;
+        }
+    }
+
+    // Serial perft below the split, with one move buffer per ply
+    private static long hashedPerft(Position pos, int depth, int[][] buffers, Hash hash) {
+        int[] moves = buffers[depth];
+        int count = MoveGenerator.generateLegal(pos, moves);
+        if (depth <= 1)
+            return depth == 1 ? count : 1;
+        long cached = hash.probe(pos.key(), depth);
+        if (cached >= 0)
+            return cached;
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(moves[i]);
+            nodes += hashedPerft(pos, depth - 1, buffers, hash);
+            pos.unmakeMove();
+        }
+        hash.store(pos.key(), depth, nodes);
+        return nodes;
+    }
+
+    /**
+     * Subtree counts keyed by position and depth, shared by all threads
+     * without locks. Each slot stores the key XORed with its data, so a slot
+     * torn by two racing writers fails verification and reads as a miss.
+     */
+    public static final class Hash {
+        private final long[] keys;
+        private final long[] data;
+        private final int mask;
+
+        public Hash(int megabytes) {
+            int slots = Integer.highestOneBit(Math.max(1, megabytes) * (1 << 20) / 16);
+            keys = new long[slots];
+            data = new long[slots];
+            mask = slots - 1;
+        }
+
+        // Node count, or -1 on a miss
+        long probe(long key, int depth) {
+            int i = (int) key & mask;
+            long d = data[i];
+            if ((keys[i] ^ d) != key || (d & 0xFF) != depth)
+                return -1;
+            return d >>> 8;
+        }
+
+        void store(long key, int depth, long nodes) {
+            int i = (int) key & mask;
+            long d = nodes << 8 | depth;
+            keys[i] = key ^ d;
+            data[i] = d;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package org.chessGDK.logic;
+
+import java.util.Arrays;
+
+/**
+ * Bitboard model of a chess position. This is the authoritative game state;
+ * the Piece[][] held by GameManager is only a view of it for rendering.
+ * Squares are numbered row * 8 + col, so a1 is 0 and h8 is 63, which matches
+ * the board[row][col] indexing used by the UI.
+ */
+public class Position {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    public static final int EMPTY = -1;
+    public static final int NO_SQUARE = -1;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final String PIECE_CHARS = "PNBRQKpnbrqk";
+
+    // Castling rights that survive a move touching the given square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASK, 0xF);
+        CASTLING_MASK[0] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[7] &= ~WHITE_KINGSIDE;
+        CASTLING_MASK[4] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[56] &= ~BLACK_QUEENSIDE;
+        CASTLING_MASK[63] &= ~BLACK_KINGSIDE;
+        CASTLING_MASK[60] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+    }
+
+    // One bitboard per piece (color * 6 + type), one per color
+    private final long[] pieces = new long[12];
+    private final long[] colors = new long[2];
+    private final int[] squares = new int[64];
+
+    private int sideToMove;
+    private int castling;
+    private int epSquare;
+    private int halfmoveClock;
+    private int fullmoveNumber;
+    private long key;
+    // Kept up to date by put, remove and move, like the key
+    private long pawnKey;
+    private int pieceSquareMiddle;
+    private int pieceSquareEnd;
+
+    // Undo stack: the move, the key before it and the packed irreversible state
+    private int ply;
+    private int[] undoMoves = new int[256];
+    private long[] undoKeys = new long[256];
+    private int[] undoStates = new int[256];
+
+    public Position() {
+        setFromFen(START_FEN);
+    }
+
+    public Position(String fen) {
+        setFromFen(fen);
+    }
+
+    // Nothing set up yet; Fen.parse clears it before placing pieces
+    private Position(boolean unset) {
+    }
+
+    static Position unset() {
+        return new Position(true);
+    }
+
+    // Independent copy, including the undo stack, for use on another thread
+    public Position(Position other) {
+        copyFrom(other);
+    }
+
+    // Overwrites this position with other, reusing the undo arrays if they fit
+    public void copyFrom(Position other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.colors, 0, colors, 0, colors.length);
+        System.arraycopy(other.squares, 0, squares, 0, squares.length);
+        sideToMove = other.sideToMove;
+        castling = other.castling;
+        epSquare = other.epSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        key = other.key;
+        pawnKey = other.pawnKey;
+        pieceSquareMiddle = other.pieceSquareMiddle;
+        pieceSquareEnd = other.pieceSquareEnd;
+        ply = other.ply;
+        if (undoMoves.length < other.undoMoves.length) {
+            undoMoves = new int[other.undoMoves.length];
+            undoKeys = new long[other.undoMoves.length];
+            undoStates = new int[other.undoMoves.length];
+        }
+        System.arraycopy(other.undoMoves, 0, undoMoves, 0, ply);
+        System.arraycopy(other.undoKeys, 0, undoKeys, 0, ply);
+        System.arraycopy(other.undoStates, 0, undoStates, 0, ply);
+    }
+
+    public static int piece(int color, int type) {
+        return color * 6 + type;
+    }
+
+    public static int colorOf(int piece) {
+        return piece < 6 ? WHITE : BLACK;
+    }
+
+    public static int typeOf(int piece) {
+        return piece < 6 ? piece : piece - 6;
+    }
+
+    public static char pieceChar(int piece) {
+        return PIECE_CHARS.charAt(piece);
+    }
+
+    public static int pieceFromChar(char c) {
+        return PIECE_CHARS.indexOf(c);
+    }
+
+    public static int square(int col, int row) {
+        return row * 8 + col;
+    }
+
+    public void setFromFen(String fen) {
+        Fen.parse(fen, this);
+    }
+
+    void clear() {
+        Arrays.fill(pieces, 0L);
+        Arrays.fill(colors, 0L);
+        Arrays.fill(squares, EMPTY);
+        key = 0L;
+        pawnKey = 0L;
+        pieceSquareMiddle = 0;
+        pieceSquareEnd = 0;
+        ply = 0;
+    }
+
+    // Sets everything but the pieces, which must already be placed
+    void setState(int side, int castlingRights, int ep, int halfmove, int fullmove) {
+        sideToMove = side;
+        castling = castlingRights;
+        // Keep en passant only if a capture is possible, as makeMove does
+        if (ep != NO_SQUARE && (Attacks.PAWN[side ^ 1][ep] & pieces[piece(side, PAWN)]) == 0)
+            ep = NO_SQUARE;
+        epSquare = ep;
+        halfmoveClock = halfmove;
+        fullmoveNumber = fullmove;
+        key ^= Zobrist.CASTLING[castling];
+        if (epSquare != NO_SQUARE)
+            key ^= Zobrist.EP_FILE[epSquare & 7];
+        if (sideToMove == BLACK)
+            key ^= Zobrist.SIDE;
+    }
+
+    /**
+     * Plays a legal move from the move generator and pushes what is needed
+     * to take it back onto the undo stack.
+     */
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int promotion = Move.promotion(move);
+        int flags = Move.flags(move);
+        int us = sideToMove;
+        int captured = (flags & Move.FLAG_EN_PASSANT) != 0 ? piece(us ^ 1, PAWN) : squares[to];
+
+        if (ply == undoMoves.length)
+            growUndoStack();
+        undoMoves[ply] = move;
+        undoKeys[ply] = key;
+        undoStates[ply] = (captured + 1) | (castling << 4) | ((epSquare + 1) << 8) | (halfmoveClock << 15);
+        ply++;
+
+        halfmoveClock++;
+        if ((flags & Move.FLAG_EN_PASSANT) != 0) {
+            remove(us == WHITE ? to - 8 : to + 8);
+            halfmoveClock = 0;
+        } else if (captured != EMPTY) {
+            remove(to);
+            halfmoveClock = 0;
+        }
+        if (typeOf(squares[from]) == PAWN)
+            halfmoveClock = 0;
+
+        move(from, to);
+        if (promotion != 0) {
+            remove(to);
+            put(piece(us, promotion), to);
+        }
+        if ((flags & Move.FLAG_CASTLE) != 0) {
+            if (to > from)
+                move(to + 1, to - 1);
+            else
+                move(to - 2, to + 1);
+        }
+
+        int newEp = NO_SQUARE;
+        if ((flags & Move.FLAG_DOUBLE_PUSH) != 0 && enemyPawnBeside(to, us))
+            newEp = (from + to) / 2;
+        if (epSquare != NO_SQUARE)
+            key ^= Zobrist.EP_FILE[epSquare & 7];
+        if (newEp != NO_SQUARE)
+            key ^= Zobrist.EP_FILE[newEp & 7];
+        epSquare = newEp;
+        key ^= Zobrist.CASTLING[castling];
+        castling &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        key ^= Zobrist.CASTLING[castling];
+        if (us == BLACK)
+            fullmoveNumber++;
+        sideToMove = us ^ 1;
+        key ^= Zobrist.SIDE;
+    }
+
+    /**
+     * Takes back the last move played with makeMove.
+     */
+    public void unmakeMove() {
+        ply--;
+        int move = undoMoves[ply];
+        int state = undoStates[ply];
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flags = Move.flags(move);
+        int captured = (state & 0xF) - 1;
+
+        sideToMove ^= 1;
+        int us = sideToMove;
+        if (us == BLACK)
+            fullmoveNumber--;
+
+        if ((flags & Move.FLAG_CASTLE) != 0) {
+            if (to > from)
+                move(to - 1, to + 1);
+            else
+                move(to + 1, to - 2);
+        }
+        if (Move.promotion(move) != 0) {
+            remove(to);
+            put(piece(us, PAWN), from);
+        } else {
+            move(to, from);
+        }
+        if ((flags & Move.FLAG_EN_PASSANT) != 0)
+            put(captured, us == WHITE ? to - 8 : to + 8);
+        else if (captured != EMPTY)
+            put(captured, to);
+
+        castling = (state >>> 4) & 0xF;
+        epSquare = ((state >>> 8) & 0x7F) - 1;
+        halfmoveClock = state >>> 15;
+        key = undoKeys[ply];
+    }
+
+    private void growUndoStack() {
+        undoMoves = Arrays.copyOf(undoMoves, undoMoves.length * 2);
+        undoKeys = Arrays.copyOf(undoKeys, undoKeys.length * 2);
+        undoStates = Arrays.copyOf(undoStates, undoStates.length * 2);
+    }
+
+    // Number of moves on the undo stack
+    public int ply() {
+        return ply;
+    }
+
+    // The move played at the given index of the history, oldest first
+    public int moveAt(int index) {
+        return undoMoves[index];
+    }
+
+    public int lastMove() {
+        return ply > 0 ? undoMoves[ply - 1] : Move.NONE;
+    }
+
+    /**
+     * How many earlier positions in the history equal this one. Only
+     * positions since the last capture or pawn move, with the same side to
+     * move, can repeat.
+     */
+    public int repetitionCount() {
+        int count = 0;
+        int oldest = Math.max(0, ply - halfmoveClock);
+        for (int i = ply - 2; i >= oldest; i -= 2) {
+            if (undoKeys[i] == key)
+                count++;
+        }
+        return count;
+    }
+
+    // En passant is only recorded when a capture is actually possible
+    private boolean enemyPawnBeside(int sq, int us) {
+        long enemyPawns = pieces[piece(us ^ 1, PAWN)];
+        int col = sq & 7;
+        return (col > 0 && (enemyPawns & (1L << (sq - 1))) != 0)
+            || (col < 7 && (enemyPawns & (1L << (sq + 1))) != 0);
+    }
+
+    void put(int piece, int sq) {
+        long bit = 1L << sq;
+        pieces[piece] |= bit;
+        colors[colorOf(piece)] |= bit;
+        squares[sq] = piece;
+        key ^= Zobrist.piece(piece, sq);
+        pieceSquareMiddle += PieceSquare.MIDDLE[piece * 64 + sq];
+        pieceSquareEnd += PieceSquare.END[piece * 64 + sq];
+        if (typeOf(piece) == PAWN)
+            pawnKey ^= Zobrist.piece(piece, sq);
+    }
+
+    private void remove(int sq) {
+        int piece = squares[sq];
+        long bit = 1L << sq;
+        pieces[piece] &= ~bit;
+        colors[colorOf(piece)] &= ~bit;
+        squares[sq] = EMPTY;
+        key ^= Zobrist.piece(piece, sq);
+        pieceSquareMiddle -= PieceSquare.MIDDLE[piece * 64 + sq];
+        pieceSquareEnd -= PieceSquare.END[piece * 64 + sq];
+        if (typeOf(piece) == PAWN)
+            pawnKey ^= Zobrist.piece(piece, sq);
+    }
+
+    private void move(int from, int to) {
+        int piece = squares[from];
+        long fromTo = (1L << from) | (1L << to);
+        pieces[piece] ^= fromTo;
+        colors[colorOf(piece)] ^= fromTo;
+        squares[from] = EMPTY;
+        squares[to] = piece;
+        key ^= Zobrist.piece(piece, from) ^ Zobrist.piece(piece, to);
+        pieceSquareMiddle += PieceSquare.MIDDLE[piece * 64 + to] - PieceSquare.MIDDLE[piece * 64 + from];
+        pieceSquareEnd += PieceSquare.END[piece * 64 + to] - PieceSquare.END[piece * 64 + from];
+        if (typeOf(piece) == PAWN)
+            pawnKey ^= Zobrist.piece(piece, from) ^ Zobrist.piece(piece, to);
+    }
+
+    // All pieces of either color attacking the square with the given occupancy
+    public long attackersTo(int sq, long occupied) {
+        long bishopsQueens = pieces[piece(WHITE, BISHOP)] | pieces[piece(BLACK, BISHOP)]
+            | pieces[piece(WHITE, QUEEN)] | pieces[piece(BLACK, QUEEN)];
+        long rooksQueens = pieces[piece(WHITE, ROOK)] | pieces[piece(BLACK, ROOK)]
+            | pieces[piece(WHITE, QUEEN)] | pieces[piece(BLACK, QUEEN)];
+        return (Attacks.PAWN[BLACK][sq] & pieces[piece(WHITE, PAWN)])
+            | (Attacks.PAWN[WHITE][sq] & pieces[piece(BLACK, PAWN)])
+            | (Attacks.KNIGHT[sq] & (pieces[piece(WHITE, KNIGHT)] | pieces[piece(BLACK, KNIGHT)]))
+            | (Attacks.KING[sq] & (pieces[piece(WHITE, KING)] | pieces[piece(BLACK, KING)]))
+            | (Attacks.bishop(sq, occupied) & bishopsQueens)
+            | (Attacks.rook(sq, occupied) & rooksQueens);
+    }
+
+    public boolean isAttacked(int sq, int byColor, long occupied) {
+        if ((Attacks.PAWN[byColor ^ 1][sq] & pieces[piece(byColor, PAWN)]) != 0
+            || (Attacks.KNIGHT[sq] & pieces[piece(byColor, KNIGHT)]) != 0
+            || (Attacks.KING[sq] & pieces[piece(byColor, KING)]) != 0)
+            return true;
+        long queens = pieces[piece(byColor, QUEEN)];
+        return (Attacks.bishop(sq, occupied) & (pieces[piece(byColor, BISHOP)] | queens)) != 0
+            || (Attacks.rook(sq, occupied) & (pieces[piece(byColor, ROOK)] | queens)) != 0;
+    }
+
+    public boolean isInCheck() {
+        return isAttacked(kingSquare(sideToMove), sideToMove ^ 1, occupied());
+    }
+
+    public int pieceAt(int sq) {
+        return squares[sq];
+    }
+
+    public long pieces(int color, int type) {
+        return pieces[piece(color, type)];
+    }
+
+    public long pieces(int color) {
+        return colors[color];
+    }
+
+    public long occupied() {
+        return colors[WHITE] | colors[BLACK];
+    }
+
+    public int kingSquare(int color) {
+        return Long.numberOfTrailingZeros(pieces[piece(color, KING)]);
+    }
+
+    public int sideToMove() {
+        return sideToMove;
+    }
+
+    public boolean isWhiteToMove() {
+        return sideToMove == WHITE;
+    }
+
+    public int castlingRights() {
+        return castling;
+    }
+
+    public int epSquare() {
+        return epSquare;
+    }
+
+    public int halfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int fullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    // 64-bit Zobrist key, kept up to date by every change to the position
+    public long key() {
+        return key;
+    }
+
+    // Zobrist key of the pawns alone, for caching pawn-structure terms
+    public long pawnKey() {
+        return pawnKey;
+    }
+
+    // Piece-square sums, White minus Black, for the middlegame and endgame
+    public int pieceSquareMiddle() {
+        return pieceSquareMiddle;
+    }
+
+    public int pieceSquareEnd() {
+        return pieceSquareEnd;
+    }
+
+    // Recomputes the key from scratch, to check the incremental updates
+    public long computeKey() {
+        long k = 0L;
+        for (int sq = 0; sq < 64; sq++) {
+            if (squares[sq] != EMPTY)
+                k ^= Zobrist.piece(squares[sq], sq);
+        }
+        k ^= Zobrist.CASTLING[castling];
+        if (epSquare != NO_SQUARE)
+            k ^= Zobrist.EP_FILE[epSquare & 7];
+        if (sideToMove == BLACK)
+            k ^= Zobrist.SIDE;
+        return k;
+    }
+}
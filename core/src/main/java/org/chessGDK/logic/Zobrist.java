@@ -0,0 +1,42 @@
+package org.chessGDK.logic;
+
+/**
+ * Random keys for Zobrist hashing. A position's key is the XOR of the keys
+ * for each piece on its square, the castling rights, the en passant file
+ * and the side to move, so a move only has to XOR in what it changes.
+ */
+public final class Zobrist {
+    // PIECE_SQUARE[piece * 64 + sq]
+    static final long[] PIECE_SQUARE = new long[12 * 64];
+    static final long[] CASTLING = new long[16];
+    static final long[] EP_FILE = new long[8];
+    static final long SIDE;
+
+    static {
+        // Fixed seed so keys are stable between runs and can be saved
+        long state = 0x6A09E667F3BCC909L;
+        for (int i = 0; i < PIECE_SQUARE.length; i++)
+            PIECE_SQUARE[i] = mix(state += 0x9E3779B97F4A7C15L);
+        // No rights hashes to zero; combinations are the XOR of single rights
+        for (int right = 1; right < CASTLING.length; right <<= 1)
+            CASTLING[right] = mix(state += 0x9E3779B97F4A7C15L);
+        for (int rights = 1; rights < CASTLING.length; rights++)
+            CASTLING[rights] = CASTLING[rights & -rights] ^ CASTLING[rights & (rights - 1)];
+        for (int i = 0; i < EP_FILE.length; i++)
+            EP_FILE[i] = mix(state += 0x9E3779B97F4A7C15L);
+        SIDE = mix(state + 0x9E3779B97F4A7C15L);
+    }
+
+    private Zobrist() {}
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public static long piece(int piece, int sq) {
+        return PIECE_SQUARE[piece * 64 + sq];
+    }
+}
@@ -27,7 +27,7 @@ public class Communication {
                 @Override
                 public void onOpen(WebSocket conn, ClientHandshake handshake) {
                     System.out.println("New client connected: " + conn.getRemoteSocketAddress());
-                    //conn.send(gm.getFenFromAI());
+                    //conn.send(gm.getFen());
                 }
 
                 @Override
@@ -17,6 +17,7 @@ public class GameOverScreen implements Screen {
     private Stage stage;
     private Skin skin;
     private ScreenManager sm;
+    private Label resultLabel;
 
     public GameOverScreen() {
         stage = new Stage(new ScreenViewport());
@@ -42,6 +43,24 @@ public class GameOverScreen implements Screen {
 
         // Add the label to the stage
         stage.addActor(titleLabel);
+
+        // How the game ended, filled in by setResult
+        resultLabel = new Label("", skin);
+        resultLabel.setAlignment(Align.center);
+        resultLabel.setPosition(
+                Gdx.graphics.getWidth() / 2f - resultLabel.getWidth() / 2f,
+                Gdx.graphics.getHeight() / 2f + 60
+        );
+        stage.addActor(resultLabel);
+    }
+
+    public void setResult(String result) {
+        resultLabel.setText(result);
+        resultLabel.pack();
+        resultLabel.setPosition(
+                Gdx.graphics.getWidth() / 2f - resultLabel.getWidth() / 2f,
+                Gdx.graphics.getHeight() / 2f + 60
+        );
     }
     private void addListeners() {
         // Add the play button
@@ -37,6 +37,7 @@ public class MenuScreen implements Screen {
     private final Stage stage;
     private final Skin skin;
     private SelectBox<String> diffSelectBox;
+    private SelectBox<String> threadSelectBox;
     private SelectBox<String> HOCSelectBox;
     private SelectBox<String> saveSelectBox;
     private Label tooltipLabel;
@@ -79,6 +80,9 @@ public class MenuScreen implements Screen {
         // Add Difficulty SelectBox
         createDifficultySelectBox(table);
 
+        // Add AI thread count SelectBox
+        createThreadSelectBox(table);
+
         // Add Multiplayer button
         table.add(createMenuButton("Multiplayer", "Play against another player", screenManager::playMultiplayer))
                 .width(BUTTON_WIDTH).height(BUTTON_HEIGHT).padBottom(15);
@@ -228,6 +232,42 @@ public class MenuScreen implements Screen {
         table.row();
     }
 
+    // Create AI thread count SelectBox, from one thread up to every core
+    private void createThreadSelectBox(Table table) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        Array<String> items = new Array<>();
+        for (int threads = 1; threads < cores; threads *= 2)
+            items.add(threads + (threads == 1 ? " Thread" : " Threads"));
+        items.add(cores + (cores == 1 ? " Thread" : " Threads"));
+        threadSelectBox = new SelectBox<>(skin);
+        threadSelectBox.setItems(items);
+
+        threadSelectBox.addListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event, Actor actor) {
+                String selected = threadSelectBox.getSelected();
+                int threads = Integer.parseInt(selected.substring(0, selected.indexOf(' ')));
+                screenManager.setThreads(threads);
+                System.out.println("AI threads set to " + threads);
+            }
+        });
+        threadSelectBox.addListener(new ClickListener() {
+            @Override
+            public void enter(InputEvent event, float x, float y, int pointer, Actor fromActor) {
+                tooltipLabel.setText("CPU threads the AI searches with");
+                tooltipLabel.setVisible(true);
+                positionTooltip(threadSelectBox);
+            }
+
+            @Override
+            public void exit(InputEvent event, float x, float y, int pointer, Actor toActor) {
+                tooltipLabel.setVisible(false);
+            }
+        });
+        table.add(threadSelectBox).padBottom(15);
+        table.row();
+    }
+
     // Create Host or Client SelectBox
     private void createHOCSelectBox(Table table) {
         HOCSelectBox = new SelectBox<>(skin);
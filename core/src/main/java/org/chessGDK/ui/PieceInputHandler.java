@@ -1,6 +1,7 @@
 package org.chessGDK.ui;
 
 import org.chessGDK.logic.GameManager;
+import org.chessGDK.logic.Position;
 import org.chessGDK.pieces.Blank;
 import org.chessGDK.pieces.Pawn;
 import org.chessGDK.pieces.Piece;
@@ -9,21 +10,18 @@ import org.chessGDK.utils.CoordinateUtils;
 import com.badlogic.gdx.*;
 import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.scenes.scene2d.ui.Dialog;
-import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.graphics.Texture;
 
-import java.io.IOException;
-
 public class PieceInputHandler extends InputAdapter {
     private Piece selectedPiece = null;
     private Piece hiddenPiece = null;
-    private Vector2 liftChars = new Vector2();
+    private int liftSquare = -1;
+    private int placeSquare = -1;
     private final Vector3 liftPositon = new Vector3();
     private final Vector3 dropPosition = new Vector3();
     private boolean firstClick = true; // To track if it's the first click
     private boolean isDragging = false;
-    private String move;
 
     private final ChessBoardScreen screen;
     private final GameManager gm;
@@ -35,7 +33,6 @@ public class PieceInputHandler extends InputAdapter {
     private CoordinateUtils coords;
 
     public PieceInputHandler(ChessBoardScreen screen, GameManager gm, Camera camera, Piece[][] board, Blank[][] p, int tileSize) {
-        move = "";
         this.screen = screen;
         this.gm = gm;
         this.camera = camera;
@@ -78,6 +75,12 @@ public class PieceInputHandler extends InputAdapter {
             ScreenManager.getInstance().pauseGame();
             return true;
         }
+        if (keycode == Input.Keys.BACKSPACE) {
+            if(isDragging || !firstClick)
+                cancelLift();
+            gm.requestUndo();
+            return true;
+        }
         return false;
     }
 
@@ -112,7 +115,6 @@ public class PieceInputHandler extends InputAdapter {
             System.out.println("Not your turn");
             return;
         }
-        move = "";
         hiddenPiece = board[liftY][liftX];
 
         selectedPiece = board[liftY][liftX].copy();
@@ -125,10 +127,8 @@ public class PieceInputHandler extends InputAdapter {
         hiddenPiece.getParent().addActor(selectedPiece);
         isDragging = true;
         firstClick = false; // Switch to second click
-        liftX += 'a';
-        liftY += '1';
-        liftChars = new Vector2(liftX, liftY);
-        System.out.println("Selected piece at: " + (char) liftX + ", " + (char) liftY);
+        liftSquare = Position.square(liftX, liftY);
+        System.out.println("Selected piece at: " + (char) (liftX + 'a') + ", " + (char) (liftY + '1'));
         showPossible();
 
     }
@@ -151,11 +151,8 @@ public class PieceInputHandler extends InputAdapter {
         int placeX = coords.worldToBoardX(worldCoordinates.x);
         int placeY = coords.worldToBoardY(worldCoordinates.y);
 
-        move = String.valueOf((char) liftChars.x) +
-            (char) liftChars.y +
-            (char) (placeX + 'a') +
-            (char) (placeY + '1');
-        if (gm.isLegalMove(move)) {
+        placeSquare = Position.square(placeX, placeY);
+        if (gm.isLegalMove(liftSquare, placeSquare)) {
             System.out.println("Placed piece at: " + (char) (placeX + 'a') + ", " + (char) (placeY + '1'));
             isDragging = false;
             clearPossible();
@@ -172,16 +169,14 @@ public class PieceInputHandler extends InputAdapter {
             }
 
             // If no promotion, queue the move immediately
-            gm.queueMove(move);
+            gm.queueMove(liftSquare, placeSquare, 0);
             selectedPiece.remove();
         } else {
-            liftChars.x -= 'a';
-            liftChars.y -= '1';
             cancelLift();
         }
         firstClick = true; // Reset for the next turn
         selectedPiece = null;  // Reset selection
-        liftChars = null;
+        liftSquare = -1;
     }
 
     public void showPromotionOptions() {
@@ -189,19 +184,17 @@ public class PieceInputHandler extends InputAdapter {
         Dialog promotionDialog = new Dialog("Choose a new Rank", screen.skin) {
             @Override
             protected void result(Object object) {
-                String choice = (String) object;
+                int choice = (Integer) object;
                 System.out.println(choice);
-                // Append promotion choice to the move
-                move += choice;
 
                 // Queue the move after promotion choice is made
-                gm.queueMove(move);
+                gm.queueMove(liftSquare, placeSquare, choice);
 
                 // Reset state after queuing the move
                 selectedPiece.remove();
                 firstClick = true;
                 selectedPiece = null;
-                liftChars = null;
+                liftSquare = -1;
             }
 
             @Override
@@ -212,31 +205,26 @@ public class PieceInputHandler extends InputAdapter {
         };
 
         promotionDialog.text("Select a piece:");
-        promotionDialog.button("Queen", "q");
-        promotionDialog.button("Rook", "r");
-        promotionDialog.button("Bishop", "b");
-        promotionDialog.button("Knight", "n");
+        promotionDialog.button("Queen", Position.QUEEN);
+        promotionDialog.button("Rook", Position.ROOK);
+        promotionDialog.button("Bishop", Position.BISHOP);
+        promotionDialog.button("Knight", Position.KNIGHT);
         promotionDialog.show(screen.stage);
         Gdx.input.setInputProcessor(screen.stage);
     }
 
     private void showPossible() {
-        String legalMoves;
-        try {
-            legalMoves = gm.getLegalMoves();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        for (String string : legalMoves.split(",")) {
-            if (string.startsWith("" + (char) liftChars.x + (char) liftChars.y)) {
-                int col = string.charAt(2) - 'a';
-                int row = string.charAt(3) - '1';
-                Blank temp = possibilities[row][col];
-                if (board[row][col] != null)
-                    temp.setTexture(new Texture("red_25_alpha.png"));
-                else
-                    temp.setTexture(new Texture("green_25_alpha.png"));
-            }
+        long targets = gm.getLegalTargets(liftSquare);
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            int col = to & 7;
+            int row = to >>> 3;
+            Blank temp = possibilities[row][col];
+            if (board[row][col] != null)
+                temp.setTexture(new Texture("red_25_alpha.png"));
+            else
+                temp.setTexture(new Texture("green_25_alpha.png"));
         }
     }
 
@@ -1,6 +1,7 @@
 package org.chessGDK.ui;
 
 import com.badlogic.gdx.Game;
+import org.chessGDK.ai.ChessEngine;
 import org.chessGDK.logic.GameManager;
 import java.io.IOException;
 
@@ -29,6 +30,9 @@ public class ScreenManager extends Game {
     // Variable for AI difficulty level
     private int difficulty = 0;
 
+    // Search threads for the AI, set next to difficulty in the menu
+    private int threads = 1;
+
     // For Network Setup
     private String HostOrClient = "";
 
@@ -52,6 +56,8 @@ public class ScreenManager extends Game {
 
     @Override
     public void create() {
+        // Have an engine process running by the time a game starts
+        ChessEngine.warmUp();
         // display the menu at the start
         displayMenu();
 
@@ -65,6 +71,14 @@ public class ScreenManager extends Game {
         this.difficulty = difficulty;
     }
 
+    public void setThreads(int threads){
+        this.threads = threads;
+    }
+
+    public int getThreads(){
+        return threads;
+    }
+
     public void setHostOrClient(String HostOrClient){
         this.HostOrClient = HostOrClient;
     }
@@ -159,6 +173,8 @@ public class ScreenManager extends Game {
     }
 
     public void exitGame() {
+        if (gm != null)
+            gm.exitGame();
         // Set the screen to Menu
         displayMenu();
         if (chessBoardScreen != null) {
@@ -0,0 +1,42 @@
+package org.chessGDK.utils;
+
+import java.io.InputStream;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+/**
+ * Where the asset files the game reads itself live: the Stockfish binary,
+ * the opening book and the bitbases.
+ */
+public class AssetPaths {
+
+    /**
+     * The assets directory with a trailing separator: -Dassets.path, else
+     * the jar manifest's Root-Path, else "" for the working directory.
+     */
+    public static String root() {
+        String path = System.getProperty("assets.path");
+        if (path == null)
+            path = getPathForJar();
+        return path == null ? "" : path;
+    }
+
+    private static String getPathForJar() {
+        String path = null;
+        try {
+            // Locate and open the manifest file in the JAR
+            InputStream manifestStream = AssetPaths.class.getResourceAsStream("/META-INF/MANIFEST.MF");
+            if (manifestStream != null) {
+                Manifest manifest = new Manifest(manifestStream);
+                Attributes attributes = manifest.getMainAttributes();
+                path = attributes.getValue("Root-Path");
+                System.out.println("Root Path from Manifest: " + path);
+            } else {
+                System.err.println("Manifest not found in JAR.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return path;
+    }
+}
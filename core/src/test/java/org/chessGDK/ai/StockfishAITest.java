@@ -0,0 +1,159 @@
+package org.chessGDK.ai;
+
+import org.chessGDK.logic.Position;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs StockfishAI against a fake engine process and checks the position
+ * lines it writes, which Stockfish would search as given.
+ */
+public class StockfishAITest {
+    private static final String LINE = "position fen " + Position.START_FEN + " moves e2e4 e7e5";
+
+    private FakeProcess process;
+    private StockfishAI engine;
+
+    // Answers a search at once, except "go ponder", which waits for stop or
+    // ponderhit; every line received is kept
+    private static final class FakeProcess extends Process {
+        final List<String> received = new CopyOnWriteArrayList<>();
+        private final PipedOutputStream toEngine = new PipedOutputStream();
+        private final PipedInputStream fromEngine = new PipedInputStream();
+        private final Thread thread;
+
+        FakeProcess() throws IOException {
+            PipedInputStream engineIn = new PipedInputStream(toEngine);
+            PipedOutputStream engineOut = new PipedOutputStream(fromEngine);
+            thread = new Thread(() -> run(engineIn, engineOut), "fake-stockfish");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void run(InputStream in, OutputStream out) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+                 PrintWriter writer = new PrintWriter(out, true)) {
+                boolean pondering = false;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    received.add(line);
+                    if (line.equals("quit"))
+                        break;
+                    if (line.equals("uci")) {
+                        writer.println("uciok");
+                    } else if (line.equals("isready")) {
+                        writer.println("readyok");
+                    } else if (line.startsWith("go ponder")) {
+                        pondering = true;
+                    } else if ((line.equals("stop") || line.equals("ponderhit")) && pondering) {
+                        pondering = false;
+                        writer.println("info depth 9 score cp 15 pv b8c6 f1b5");
+                        writer.println("bestmove b8c6 ponder f1b5");
+                    } else if (line.startsWith("go")) {
+                        writer.println("info depth 7 score cp 30 pv g1f3 b8c6");
+                        writer.println("bestmove g1f3 ponder b8c6");
+                    }
+                }
+            } catch (IOException e) {
+                // StockfishAI closed its end
+            }
+        }
+
+        List<String> positions() {
+            return received.stream().filter(line -> line.startsWith("position")).collect(Collectors.toList());
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return toEngine;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return fromEngine;
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public int waitFor() throws InterruptedException {
+            thread.join();
+            return 0;
+        }
+
+        @Override
+        public int exitValue() {
+            if (thread.isAlive())
+                throw new IllegalThreadStateException("running");
+            return 0;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return thread.isAlive();
+        }
+
+        @Override
+        public void destroy() {
+            try {
+                toEngine.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @BeforeEach
+    public void start() throws IOException {
+        process = new FakeProcess();
+        engine = new StockfishAI(process, 12, -1, 1, 16, Position.START_FEN);
+    }
+
+    @AfterEach
+    public void close() throws Exception {
+        engine.close();
+        process.waitFor();
+    }
+
+    @Test
+    public void positionCommandsGoThroughUnchanged() throws IOException {
+        engine.sendPosition(LINE);
+        assertArrayEquals(new String[] {"g1f3", "b8c6", "cp 30", "7"}, engine.getBestMove(60000, 60000, 0, 0));
+        assertEquals(List.of(LINE), process.positions());
+    }
+
+    @Test
+    public void aFenBecomesAPositionCommand() throws IOException {
+        engine.getBestMove();
+        assertEquals(List.of("position fen " + Position.START_FEN), process.positions());
+    }
+
+    @Test
+    public void ponderSearchesThePredictedReply() throws IOException {
+        engine.sendPosition(LINE);
+        engine.ponder("g1f3", 60000, 60000, 0, 0);
+        engine.sendPosition(LINE + " g1f3");
+        assertArrayEquals(new String[] {"b8c6", "f1b5", "cp 15", "9"}, engine.getBestMove(60000, 60000, 0, 0));
+        assertEquals(List.of(LINE + " g1f3"), process.positions());
+        assertEquals("ponderhit", process.received.get(process.received.size() - 1));
+    }
+}
@@ -0,0 +1,167 @@
+package org.chessGDK.ai;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs UciClient against a fake engine on the other end of a pair of pipes.
+ * The fake answers "go infinite" only when stopped, and any other go at
+ * once, which is enough to check the order replies are matched in.
+ */
+public class UciClientTest {
+    private PipedOutputStream engineOut;
+    private FlushRecorder toEngine;
+    private Thread engine;
+    private UciClient client;
+
+    // Keeps what was written between flushes, one entry per flush
+    private static final class FlushRecorder extends OutputStream {
+        final List<String> writes = new CopyOnWriteArrayList<>();
+        private final OutputStream out;
+        private final StringBuilder pending = new StringBuilder();
+
+        FlushRecorder(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            pending.append((char) b);
+            out.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            pending.append(new String(b, off, len, StandardCharsets.US_ASCII));
+            out.write(b, off, len);
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (pending.length() > 0)
+                writes.add(pending.toString());
+            pending.setLength(0);
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    @BeforeEach
+    public void startEngine() throws IOException {
+        PipedOutputStream commands = new PipedOutputStream();
+        PipedInputStream engineIn = new PipedInputStream(commands);
+        engineOut = new PipedOutputStream();
+        PipedInputStream replies = new PipedInputStream(engineOut);
+        toEngine = new FlushRecorder(commands);
+        engine = new Thread(() -> fakeEngine(engineIn), "fake-engine");
+        engine.setDaemon(true);
+        engine.start();
+        client = new UciClient(replies, toEngine, "fake");
+    }
+
+    @AfterEach
+    public void stopEngine() throws Exception {
+        client.close();
+        engine.join(1000);
+    }
+
+    private void fakeEngine(PipedInputStream in) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+             PrintWriter writer = new PrintWriter(engineOut, true)) {
+            boolean searching = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.equals("quit"))
+                    break;
+                if (line.equals("uci")) {
+                    writer.println("id name Fake");
+                    writer.println("uciok");
+                } else if (line.equals("isready")) {
+                    writer.println("readyok");
+                } else if (line.equals("go infinite")) {
+                    searching = true;
+                } else if (line.equals("stop") && searching) {
+                    searching = false;
+                    writer.println("bestmove a2a3");
+                } else if (line.startsWith("go")) {
+                    writer.println("info depth 1 score cp 20 pv e7e5 g1f3");
+                    writer.println("bestmove e7e5 ponder g1f3");
+                }
+            }
+        } catch (IOException e) {
+            // The client closed its end
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void stopPositionAndGoGoInOneWrite() throws Exception {
+        await(client.uci());
+        CompletableFuture<String[]> stopped = client.go("position startpos", "go infinite");
+        CompletableFuture<String[]> next = client.go("stop", "position startpos moves e2e4", "go movetime 10");
+        await(next);
+        assertEquals("a2a3", await(stopped)[0]);
+        assertEquals("stop\nposition startpos moves e2e4\ngo movetime 10\n",
+            toEngine.writes.get(toEngine.writes.size() - 1));
+        assertEquals(3, toEngine.writes.size());
+    }
+
+    @Test
+    public void repliesCompleteFuturesInOrder() throws Exception {
+        CompletableFuture<Void> uciOk = client.uci();
+        CompletableFuture<String[]> stopped = client.go("position startpos", "go infinite");
+        CompletableFuture<String[]> next = client.go("stop", "position startpos moves e2e4", "go movetime 10");
+        CompletableFuture<Void> ready = client.isReady();
+        await(uciOk);
+        // The stopped search's bestmove belongs to the first go, not the second
+        assertArrayEquals(new String[] {"a2a3", ""}, await(stopped));
+        assertArrayEquals(new String[] {"e7e5", "g1f3"}, await(next));
+        await(ready);
+    }
+
+    @Test
+    public void infoLinesReachTheListener() throws Exception {
+        List<String> info = new CopyOnWriteArrayList<>();
+        client.setInfoListener(info::add);
+        await(client.go("position startpos", "go movetime 10"));
+        assertEquals(List.of("info depth 1 score cp 20 pv e7e5 g1f3"), info);
+    }
+
+    @Test
+    public void waitingRequestsFailWhenTheEngineQuits() throws Exception {
+        await(client.uci());
+        CompletableFuture<String[]> search = client.go("position startpos", "go infinite");
+        client.send("quit");
+        ExecutionException e = assertThrows(ExecutionException.class, () -> await(search));
+        assertInstanceOf(IOException.class, e.getCause());
+        // Later requests fail at once instead of waiting forever
+        assertThrows(ExecutionException.class, () -> await(client.isReady()));
+    }
+}
@@ -0,0 +1,93 @@
+package org.chessGDK.logic;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Every legal move made and unmade a few plies deep must leave the position
+ * exactly as it was: board, rights, en passant, clocks, keys and the
+ * incremental piece-square sums.
+ */
+public class PositionTest {
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    // En passant available at once, and promotions with and without capture
+    private static final String EN_PASSANT = "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3";
+    private static final String PROMOTION = "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1";
+
+    @Test
+    public void startPositionRoundTrips() {
+        roundTrip(Position.START_FEN, 3);
+    }
+
+    @Test
+    public void kiwipeteRoundTrips() {
+        roundTrip(KIWIPETE, 3);
+    }
+
+    @Test
+    public void enPassantRoundTrips() {
+        roundTrip(EN_PASSANT, 3);
+    }
+
+    @Test
+    public void promotionRoundTrips() {
+        roundTrip(PROMOTION, 3);
+    }
+
+    @Test
+    public void incrementalKeyMatchesComputedKey() {
+        Position pos = Fen.parse(KIWIPETE);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(pos, moves);
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(moves[i]);
+            assertEquals(pos.computeKey(), pos.key(), Move.toUci(moves[i]));
+            pos.unmakeMove();
+        }
+    }
+
+    @Test
+    public void castlingNeedsKingAndRookAtHome() {
+        Position pos = Fen.parse("4k3/8/8/8/8/8/8/4K3 w K - 0 1");
+        assertEquals(0, pos.castlingRights());
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(pos, moves);
+        for (int i = 0; i < count; i++)
+            assertFalse(Move.isCastle(moves[i]), Move.toUci(moves[i]));
+        assertEquals(Position.BLACK_QUEENSIDE | Position.WHITE_KINGSIDE,
+            Fen.parse("r3k3/8/8/8/8/8/8/4K2R b KQkq - 0 1").castlingRights());
+    }
+
+    private static void roundTrip(String fen, int depth) {
+        Position pos = Fen.parse(fen);
+        walk(pos, depth);
+        assertEquals(0, pos.ply());
+        assertEquals(fen, Fen.write(pos));
+    }
+
+    private static void walk(Position pos, int depth) {
+        if (depth == 0)
+            return;
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(pos, moves);
+        String fen = Fen.write(pos);
+        long key = pos.key();
+        long pawnKey = pos.pawnKey();
+        int middle = pos.pieceSquareMiddle();
+        int end = pos.pieceSquareEnd();
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(moves[i]);
+            walk(pos, depth - 1);
+            pos.unmakeMove();
+            String move = Move.toUci(moves[i]);
+            assertEquals(fen, Fen.write(pos), move);
+            assertEquals(key, pos.key(), move);
+            assertEquals(pawnKey, pos.pawnKey(), move);
+            assertEquals(middle, pos.pieceSquareMiddle(), move);
+            assertEquals(end, pos.pieceSquareEnd(), move);
+            assertEquals(key, pos.computeKey(), move);
+        }
+    }
+}